@@ -0,0 +1,128 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.payload.ImageUrlPayload;
+import com.example.qrcodegenerator.payload.LandingPages;
+import com.example.qrcodegenerator.payload.PayloadContext;
+import com.example.qrcodegenerator.payload.PayloadType;
+import com.example.qrcodegenerator.payload.PayloadTypes;
+import com.example.qrcodegenerator.payload.SocialPayload;
+import com.example.qrcodegenerator.payload.TextPayload;
+import com.example.qrcodegenerator.payload.UrlPayload;
+import com.example.qrcodegenerator.payload.VCardPayload;
+import com.example.qrcodegenerator.service.PageStore;
+import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.RenderMetrics;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import com.example.qrcodegenerator.service.UploadStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code POST /api/qr} body handling: building the vCard / social landing page
+ * content from the bound request, the same starting from the JSON bytes, and the whole
+ * body through to PNG bytes. Social pages go to a page store in a temporary directory; after
+ * the first call they are duplicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+    private static final PayloadContext CONTEXT = new PayloadContext("http://localhost:9091",
+            "http://localhost:9091");
+
+    @Param({ "vcard", "social" })
+    String type;
+
+    private RenderScheduler scheduler;
+    private QrController controller;
+    private PayloadTypes payloadTypes;
+    private JsonMapper mapper;
+    private JsonNode body;
+    private PayloadType<Object> payloadType;
+    private Object request;
+    private byte[] json;
+    private PageStore pageStore;
+    private Path workDir;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("qr-bench");
+        pageStore = new PageStore(workDir.toString(), DataSize.ofMegabytes(64), Duration.ZERO);
+
+        scheduler = new RenderScheduler(1, 64, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        controller = new QrController();
+        RenderMetrics metrics = new RenderMetrics(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(controller, "qrService", new QrService(0, 0, "native", scheduler, metrics));
+        ReflectionTestUtils.setField(controller, "renderScheduler", scheduler);
+        ReflectionTestUtils.setField(controller, "metrics", metrics);
+        mapper = JsonMapper.builder().build();
+        LandingPages pages = new LandingPages(pageStore, scheduler, metrics);
+        UploadStore uploads = new UploadStore(DataSize.ofMegabytes(1), 25_000_000, List.of("png"), List.of(),
+                scheduler);
+        payloadTypes = new PayloadTypes(List.of(new TextPayload(), new UrlPayload(), new VCardPayload(),
+                new SocialPayload(pages), new ImageUrlPayload(pages, uploads)), mapper, metrics);
+        ReflectionTestUtils.setField(controller, "payloadTypes", payloadTypes);
+        ReflectionTestUtils.setField(controller, "objectMapper", mapper);
+
+        Map<String, String> payload = "vcard".equals(type)
+                ? Map.of("firstName", "Ada", "lastName", "Lovelace", "org", "Analytical Engines Ltd",
+                        "title", "Programmer", "phone", "+44 20 7946 0000", "email", "ada@example.com",
+                        "url", "https://example.com/ada", "address", "12 St James's Square, London SW1Y 4JH")
+                : Map.of("facebook", "https://facebook.com/example", "twitter", "https://x.com/example",
+                        "instagram", "https://instagram.com/example", "linkedin", "https://linkedin.com/in/example");
+        json = mapper.writeValueAsBytes(Map.of("type", type, "size", 300, "theme", "indigo", "payload", payload));
+        body = mapper.readTree(json);
+        payloadType = (PayloadType<Object>) payloadTypes.get(type);
+        request = payloadTypes.bind(payloadType, body);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        scheduler.destroy();
+        pageStore.destroy();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public String buildContent() throws Exception {
+        return payloadType.content(request, CONTEXT);
+    }
+
+    @Benchmark
+    public String bindAndBuildContent() throws Exception {
+        return payloadTypes.content(mapper.readTree(json), CONTEXT);
+    }
+
+    @Benchmark
+    public byte[] renderBody() throws Exception {
+        return controller.renderBody(body, CONTEXT);
+    }
+}
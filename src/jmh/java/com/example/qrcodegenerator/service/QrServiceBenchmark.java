@@ -0,0 +1,71 @@
+package com.example.qrcodegenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uncached cost of {@link QrService#generatePng}: both caches are sized to zero so every
+ * call encodes the content and rasters the PNG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QrServiceBenchmark {
+
+    @Param({ "16", "128", "1024" })
+    int textLength;
+
+    @Param({ "100", "300", "1200", "4000" })
+    int size;
+
+    private RenderScheduler scheduler;
+    private QrService service;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        scheduler = new RenderScheduler(1, 64, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        service = new QrService(0, 0, "native", scheduler, new RenderMetrics(new SimpleMeterRegistry()));
+        text = payload(textLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Benchmark
+    public byte[] generatePng() throws Exception {
+        return service.generatePng(text, size);
+    }
+
+    @Benchmark
+    public byte[] generatePngWithColors() throws Exception {
+        return service.generatePng(text, size, 0xFF3F51B5, 0xFFE8F5E9);
+    }
+
+    // URL-like ASCII so byte mode is used, as for most real payloads
+    static String payload(int length) {
+        StringBuilder sb = new StringBuilder("https://example.com/p?");
+        for (int i = 0; sb.length() < length; i++)
+            sb.append((char) ('a' + i % 26));
+        return sb.substring(0, length);
+    }
+}
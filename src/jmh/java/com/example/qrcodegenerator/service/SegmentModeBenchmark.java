@@ -0,0 +1,90 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-mode UTF-8 encoding (what {@link QrService} did before) against the minimal
+ * segment split it uses now, over the payload shapes the controller actually produces.
+ * {@code encode} is the encoder alone; {@code encodeAndRender} adds the 300 px PNG, which
+ * is where a smaller version pays off. The versions are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentModeBenchmark {
+
+    private static final Map<String, String> PAYLOADS = Map.of(
+            "url", "https://example.com/menu?table=12&utm_source=qr&utm_campaign=spring2024",
+            "pagesUrl", "https://qr.example.com/pages/3f2a9c0d41e87b65a0c4d2e19f8b7a63.html",
+            "vcard", "BEGIN:VCARD\nVERSION:3.0\nN:Doe;Jane\nFN:Jane Doe\nORG:Example Bakery\n"
+                    + "TEL;TYPE=CELL:+15551234567\nTEL;TYPE=WORK:+15559876543\n"
+                    + "EMAIL:jane.doe@example.com\nURL:https://example.com\nEND:VCARD\n",
+            "wifi", "WIFI:T:WPA;S:Cafe-Guest-5G;P:espresso2024;;",
+            "ticket", "TKT-2024-000418237-00192-A",
+            "numeric", "0123456789012345678901234567890123456789012345678901234567890123",
+            "unicode", "Grüße aus Köln – Tisch 12, Speisekarte: https://example.com/karte");
+
+    @Param({ "url", "pagesUrl", "vcard", "wifi", "ticket", "numeric", "unicode" })
+    String payload;
+
+    @Param({ "byte", "compact" })
+    String encoding;
+
+    @Param({ "L", "M" })
+    String ecc;
+
+    private String text;
+    private ErrorCorrectionLevel level;
+    private Map<EncodeHintType, Object> hints;
+
+    @Setup
+    public void setUp() throws Exception {
+        text = PAYLOADS.get(payload);
+        level = ErrorCorrectionLevel.valueOf(ecc);
+        hints = "compact".equals(encoding) ? QrService.hints(text) : Map.of(EncodeHintType.CHARACTER_SET, "UTF-8");
+        System.out.println(payload + " " + encoding + " " + ecc + ": version " + encode().getVersion());
+    }
+
+    @Benchmark
+    public QRCode encode() throws Exception {
+        return Encoder.encode(text, level, hints);
+    }
+
+    @Benchmark
+    public byte[] encodeAndRender() throws Exception {
+        ByteMatrix matrix = encode().getMatrix();
+        BitMatrix bits = new BitMatrix(matrix.getWidth(), matrix.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (matrix.get(x, y) == 1)
+                    bits.set(x, y);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder().write(new QrRaster(bits, 300, 300), 0xFF000000, 0xFFFFFFFF, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.qrcodegenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the SVG and (uncached) PNG writers from an already encoded module grid. The
+ * output size is printed once per trial, since JMH only reports time and allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SvgVsPngBenchmark {
+
+    private static final String TEXT = "https://example.com/menu?table=12&lang=en&utm_source=print";
+
+    @Param({ "150", "300", "1200", "4000" })
+    int size;
+
+    @Param({ "PNG", "SVG" })
+    QrFormat format;
+
+    private RenderScheduler scheduler;
+    private QrService service;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setUp() {
+        scheduler = new RenderScheduler(1, 64, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        service = new QrService(0, 1 << 20, "native", scheduler, new RenderMetrics(new SimpleMeterRegistry()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s %dpx: %d bytes%n", format, size, out.size());
+        scheduler.destroy();
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        out.reset();
+        service.prepare(TEXT, size, 0xFF2E7D32, 0xFFE8F5E9, format).writeTo(out);
+        return out.size();
+    }
+}
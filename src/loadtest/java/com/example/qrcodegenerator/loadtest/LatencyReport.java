@@ -0,0 +1,134 @@
+package com.example.qrcodegenerator.loadtest;
+
+import com.example.qrcodegenerator.loadtest.Scenario.Operation;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the measured part of a run, per operation and in total. Latency
+ * is recorded in microseconds from the time a request was due to be sent, not from when it
+ * was, so a stalled server shows up in the percentiles rather than as a lower request rate.
+ */
+final class LatencyReport {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /** Counts and the latency histogram of one operation, or of all of them. */
+    static final class Stats {
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final LongAdder scheduled = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        private void record(String outcome, long latencyNanos, boolean error) {
+            latency.recordValue(Math.max(1, latencyNanos / 1000));
+            scheduled.increment();
+            if (error)
+                errors.increment();
+            if (outcome.equals("503"))
+                rejected.increment();
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+
+        private void dropped() {
+            scheduled.increment();
+            dropped.increment();
+        }
+
+        long requests() {
+            return latency.getTotalCount();
+        }
+
+        /** Failed responses and dropped requests over everything that was due to be sent. */
+        double errorRate() {
+            long scheduled = this.scheduled.sum();
+            return scheduled == 0 ? 0 : (double) (errors.sum() + dropped.sum()) / scheduled;
+        }
+
+        double percentileMillis(double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        private ObjectNode toJson(JsonMapper mapper, double seconds) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("requests", requests());
+            node.put("errors", errors.sum());
+            node.put("rejected", rejected.sum());
+            node.put("dropped", dropped.sum());
+            node.put("errorRate", round(errorRate()));
+            node.put("throughput", round((requests() - errors.sum()) / seconds));
+            ObjectNode latencyMs = node.putObject("latencyMs");
+            latencyMs.put("mean", round(latency.getMean() / 1000.0));
+            for (double percentile : PERCENTILES)
+                latencyMs.put("p" + (percentile == (int) percentile ? String.valueOf((int) percentile)
+                        : String.valueOf(percentile)), round(percentileMillis(percentile)));
+            latencyMs.put("max", round(latency.getMaxValue() / 1000.0));
+            ObjectNode statuses = node.putObject("outcomes");
+            new TreeMap<>(outcomes).forEach((outcome, count) -> statuses.put(outcome, count.sum()));
+            return node;
+        }
+    }
+
+    private final Map<Operation, Stats> operations = new EnumMap<>(Operation.class);
+    private final Stats total = new Stats();
+
+    LatencyReport(Iterable<Operation> operations) {
+        for (Operation operation : operations)
+            this.operations.put(operation, new Stats());
+    }
+
+    /** A response (an HTTP status) or a failure to get one (a short name for the exception). */
+    void record(Operation operation, String outcome, long latencyNanos, boolean error) {
+        operations.get(operation).record(outcome, latencyNanos, error);
+        total.record(outcome, latencyNanos, error);
+    }
+
+    /** A request that was due but not sent, because too many were already waiting. */
+    void dropped(Operation operation) {
+        operations.get(operation).dropped();
+        total.dropped();
+    }
+
+    Stats total() {
+        return total;
+    }
+
+    Map<Operation, Stats> operations() {
+        return operations;
+    }
+
+    /** The report, with {@code run} (the settings and outcome of the run) merged in at the top. */
+    ObjectNode toJson(JsonMapper mapper, ObjectNode run, double seconds) {
+        ObjectNode report = run.deepCopy();
+        report.set("total", total.toJson(mapper, seconds));
+        ObjectNode byOperation = report.putObject("operations");
+        operations.forEach((operation, stats) -> {
+            if (stats.scheduled.sum() > 0)
+                byOperation.set(operation.key(), stats.toJson(mapper, seconds));
+        });
+        return report;
+    }
+
+    static void write(JsonMapper mapper, ObjectNode report, Path path) throws IOException {
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+        mapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.qrcodegenerator.loadtest;
+
+import com.example.qrcodegenerator.loadtest.LatencyReport.Stats;
+import com.example.qrcodegenerator.loadtest.Scenario.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An open-loop load generator for a running instance. Requests are sent at a fixed rate (or
+ * with Poisson arrivals at that mean rate) whether or not earlier ones have completed, each
+ * on its own virtual thread, and their latency is taken from when they were due. After the
+ * warmup, latencies go into HDR histograms and the report is written as JSON.
+ *
+ * <pre>
+ * java -cp ... com.example.qrcodegenerator.loadtest.LoadTest --target=http://localhost:9091 \
+ *     --rate=500 --duration=60s [--mix=get=40,post-vcard=10,page=8] [--report=report.json]
+ * </pre>
+ *
+ * With {@code --max-error-rate} or {@code --max-p99} the run fails, exiting with 1, when the
+ * total exceeds them; {@code --check=report.json} exits the same way for an earlier run's
+ * report, so that a build can stop the instance under test before failing.
+ */
+public final class LoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+    private final Map<String, String> options;
+    private final JsonMapper mapper = JsonMapper.builder().build();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank())
+                continue;
+            if (!arg.startsWith("--"))
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            int equals = arg.indexOf('=');
+            if (equals < 0)
+                options.put(arg.substring(2), "true");
+            else if (equals < arg.length() - 1)
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        LoadTest loadTest = new LoadTest(options);
+        System.exit(options.containsKey("check") ? loadTest.check() : loadTest.run());
+    }
+
+    private int run() {
+        Path reportPath = Path.of(option("report", "loadtest-report.json"));
+        ObjectNode run = mapper.createObjectNode();
+        ObjectNode report;
+        try {
+            report = generate(run);
+        } catch (Exception e) {
+            log.error("Load test did not run", e);
+            report = run;
+            report.putArray("violations").add("did not run: " + e);
+        }
+        report.put("passed", report.get("violations").isEmpty());
+        try {
+            LatencyReport.write(mapper, report, reportPath);
+            log.info("Report written to {}", reportPath.toAbsolutePath());
+        } catch (Exception e) {
+            log.error("Writing {} failed", reportPath, e);
+            return 1;
+        }
+        return verdict(report);
+    }
+
+    private int check() {
+        Path reportPath = Path.of(options.get("check"));
+        try {
+            return verdict(mapper.readTree(reportPath.toFile()));
+        } catch (Exception e) {
+            log.error("Reading {} failed", reportPath, e);
+            return 1;
+        }
+    }
+
+    private static int verdict(JsonNode report) {
+        JsonNode violations = report.path("violations");
+        if (!violations.isArray() || !report.path("passed").asBoolean(false)) {
+            violations.forEach(violation -> log.error("Load test failed: {}", violation.stringValue()));
+            return 1;
+        }
+        return 0;
+    }
+
+    private ObjectNode generate(ObjectNode run) throws Exception {
+        URI target = URI.create(option("target", "http://localhost:9091"));
+        int rate = Integer.parseInt(option("rate", "500"));
+        Duration duration = duration("duration", "30s");
+        Duration warmup = duration("warmup", "10s");
+        Duration timeout = duration("timeout", "10s");
+        boolean poisson = switch (option("arrival", "poisson")) {
+            case "poisson" -> true;
+            case "constant" -> false;
+            default -> throw new IllegalArgumentException("arrival is poisson or constant");
+        };
+        int maxInFlight = Integer.parseInt(option("max-in-flight", "10000"));
+        int[] sizes = Arrays.stream(option("sizes", "200,300,600").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+        String[] themes = Arrays.stream(option("themes", "none,classic,indigo,sunset,forest,midnight").split(","))
+                .map(String::trim).toArray(String[]::new);
+        int distinct = Integer.parseInt(option("distinct", "1000"));
+        if (rate < 1 || duration.isNegative() || duration.isZero() || warmup.isNegative() || maxInFlight < 1)
+            throw new IllegalArgumentException("rate, duration and max-in-flight must be positive");
+
+        Scenario scenario = new Scenario(target, timeout, mapper, option("mix", Scenario.DEFAULT_MIX), sizes,
+                themes, distinct);
+        run.put("target", target.toString());
+        run.put("arrival", poisson ? "poisson" : "constant");
+        run.put("rate", rate);
+        run.put("warmupSeconds", warmup.toMillis() / 1000.0);
+        run.put("durationSeconds", duration.toMillis() / 1000.0);
+        run.put("mix", option("mix", Scenario.DEFAULT_MIX));
+
+        LatencyReport report = new LatencyReport(scenario.operations());
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+                HttpClient client = HttpClient.newBuilder().executor(threads).version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(timeout).build()) {
+            scenario.setUp(client, ThreadLocalRandom.current());
+            log.info("Sending {} requests/s ({} arrivals) to {} for {} after {} of warmup", rate,
+                    poisson ? "Poisson" : "constant", target, duration, warmup);
+            send(client, threads, scenario, report, rate, poisson, warmup, duration, maxInFlight);
+            awaitInFlight(timeout.plusSeconds(1));
+        }
+
+        ObjectNode result = report.toJson(mapper, run, duration.toMillis() / 1000.0);
+        List<String> violations = violations(report.total());
+        ArrayNode array = result.putArray("violations");
+        violations.forEach(array::add);
+        summarize(report);
+        return result;
+    }
+
+    // the schedule is kept in absolute due times; when sending falls behind it catches up
+    // immediately instead of spacing the late requests out, which would hide the stall
+    private void send(HttpClient client, ExecutorService threads, Scenario scenario, LatencyReport report, int rate,
+            boolean poisson, Duration warmup, Duration duration, int maxInFlight) throws Exception {
+        SplittableRandom random = new SplittableRandom();
+        double meanGapNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long nextProgress = start + PROGRESS_INTERVAL.toNanos();
+        double due = start;
+        while ((long) due < end) {
+            long dueNanos = (long) due;
+            for (long wait = dueNanos - System.nanoTime(); wait > 0; wait = dueNanos - System.nanoTime())
+                LockSupport.parkNanos(wait);
+            Operation operation = scenario.pick(random);
+            boolean measured = dueNanos >= measureFrom;
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                if (measured)
+                    report.dropped(operation);
+            } else {
+                HttpRequest request = scenario.request(operation, random);
+                threads.execute(() -> exchange(client, request, operation, dueNanos, measured ? report : null));
+            }
+            due += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+            if (dueNanos >= nextProgress) {
+                Stats total = report.total();
+                log.info("{}s: {} in flight, {} measured, error rate {}", Duration.ofNanos(dueNanos - start).toSeconds(),
+                        inFlight.get(), total.requests(), String.format("%.4f", total.errorRate()));
+                nextProgress += PROGRESS_INTERVAL.toNanos();
+            }
+        }
+    }
+
+    private void exchange(HttpClient client, HttpRequest request, Operation operation, long dueNanos,
+            LatencyReport report) {
+        try {
+            String outcome;
+            boolean error;
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                outcome = String.valueOf(status);
+                error = status >= 400;
+            } catch (HttpConnectTimeoutException e) {
+                outcome = "connect-timeout";
+                error = true;
+            } catch (HttpTimeoutException e) {
+                outcome = "timeout";
+                error = true;
+            } catch (Exception e) {
+                outcome = e.getClass().getSimpleName();
+                error = true;
+            }
+            if (report != null)
+                report.record(operation, outcome, System.nanoTime() - dueNanos, error);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void awaitInFlight(Duration limit) throws InterruptedException {
+        long deadline = System.nanoTime() + limit.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        if (inFlight.get() > 0)
+            log.warn("{} requests still in flight after {}", inFlight.get(), limit);
+    }
+
+    private List<String> violations(Stats total) {
+        List<String> violations = new ArrayList<>();
+        if (total.requests() == 0)
+            violations.add("no requests completed");
+        if (options.containsKey("max-error-rate")) {
+            double max = Double.parseDouble(options.get("max-error-rate"));
+            if (total.errorRate() > max)
+                violations.add(String.format("error rate %.4f is above %s", total.errorRate(), max));
+        }
+        if (options.containsKey("max-p99")) {
+            Duration max = duration("max-p99", null);
+            double p99 = total.percentileMillis(99);
+            if (p99 > max.toNanos() / 1e6)
+                violations.add(String.format("p99 %.1f ms is above %d ms", p99, max.toMillis()));
+        }
+        return violations;
+    }
+
+    private void summarize(LatencyReport report) {
+        log.info(String.format("%-12s %9s %8s %9s %9s %9s %9s", "operation", "requests", "errors", "p50 ms",
+                "p99 ms", "p99.9 ms", "max ms"));
+        report.operations().forEach((operation, stats) -> log.info(line(operation.key(), stats)));
+        log.info(line("total", report.total()));
+    }
+
+    private static String line(String name, Stats stats) {
+        return String.format("%-12s %9d %7.2f%% %9.2f %9.2f %9.2f %9.2f", name, stats.requests(),
+                stats.errorRate() * 100, stats.percentileMillis(50), stats.percentileMillis(99),
+                stats.percentileMillis(99.9), stats.percentileMillis(100));
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(option(name, defaultValue));
+    }
+}
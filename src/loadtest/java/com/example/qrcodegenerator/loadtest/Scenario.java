@@ -0,0 +1,253 @@
+package com.example.qrcodegenerator.loadtest;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * What a load test sends: a weighted mix of operations, each building its request from a
+ * payload picked out of {@code distinct} variants and a random size and theme. The static
+ * operations need something to serve, so {@link #setUp} uploads a few images and creates a
+ * few landing pages first; the page URLs are read back from the codes the server returns.
+ */
+final class Scenario {
+
+    private static final Logger log = LoggerFactory.getLogger(Scenario.class);
+
+    static final String DEFAULT_MIX = "get=40,get-svg=10,post-text=10,post-url=10,post-vcard=8,"
+            + "post-social=4,post-image=2,page=8,upload-get=6,upload=2";
+
+    private static final int SETUP_UPLOADS = 8;
+    private static final int SETUP_PAGES = 8;
+
+    enum Operation {
+        GET_PNG("get"),
+        GET_SVG("get-svg"),
+        POST_TEXT("post-text"),
+        POST_URL("post-url"),
+        POST_VCARD("post-vcard"),
+        POST_SOCIAL("post-social"),
+        POST_IMAGE_URL("post-image"),
+        PAGE("page"),
+        UPLOAD_GET("upload-get"),
+        UPLOAD("upload");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key))
+                    return operation;
+            }
+            throw new IllegalArgumentException("unknown operation " + key);
+        }
+    }
+
+    private final URI target;
+    private final Duration timeout;
+    private final JsonMapper mapper;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final int[] sizes;
+    private final String[] themes;
+    private final int distinct;
+    private final List<String> pages = new ArrayList<>();
+    private final List<String> uploads = new ArrayList<>();
+
+    /**
+     * @param mix comma separated {@code operation=weight}; a missing weight is 1
+     * @param themes theme names; {@code none} leaves the theme out
+     */
+    Scenario(URI target, Duration timeout, JsonMapper mapper, String mix, int[] sizes, String[] themes,
+            int distinct) {
+        this.target = target;
+        this.timeout = timeout;
+        this.mapper = mapper;
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            if (entry.isBlank())
+                continue;
+            String[] parts = entry.trim().split("=", 2);
+            int weight = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight < 0)
+                throw new IllegalArgumentException("negative weight for " + parts[0]);
+            if (weight > 0)
+                weights.merge(Operation.of(parts[0].trim().toLowerCase(Locale.ROOT)), weight, Integer::sum);
+        }
+        if (weights.isEmpty())
+            throw new IllegalArgumentException("the mix has no operations");
+        if (sizes.length == 0 || themes.length == 0 || distinct < 1)
+            throw new IllegalArgumentException("sizes, themes and distinct payloads must not be empty");
+        this.operations = weights.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++)
+            cumulativeWeights[i] = sum += weights.get(operations[i]);
+        this.sizes = sizes;
+        this.themes = themes;
+        this.distinct = distinct;
+    }
+
+    Set<Operation> operations() {
+        return EnumSet.copyOf(List.of(operations));
+    }
+
+    Operation pick(RandomGenerator random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= ticket)
+            i++;
+        return operations[i];
+    }
+
+    /** Uploads the images and creates the landing pages that the static operations serve. */
+    void setUp(HttpClient client, RandomGenerator random) throws IOException, InterruptedException {
+        Set<Operation> used = operations();
+        if (used.contains(Operation.UPLOAD_GET) || used.contains(Operation.POST_IMAGE_URL)) {
+            for (int i = 0; i < SETUP_UPLOADS; i++) {
+                HttpResponse<String> response = client.send(upload(random), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200)
+                    throw new IOException("upload during setup returned " + response.statusCode());
+                uploads.add(mapper.readTree(response.body()).get("url").stringValue());
+            }
+        }
+        if (used.contains(Operation.PAGE)) {
+            for (int i = 0; i < SETUP_PAGES; i++) {
+                HttpRequest request = post(Map.of("type", "social", "size", 400, "payload",
+                        links(random.nextInt(distinct))));
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() != 200)
+                    throw new IOException("creating a page during setup returned " + response.statusCode());
+                pages.add(decode(response.body()));
+            }
+        }
+        log.info("Set up {} uploads and {} landing pages", uploads.size(), pages.size());
+    }
+
+    HttpRequest request(Operation operation, RandomGenerator random) throws IOException {
+        int n = random.nextInt(distinct);
+        return switch (operation) {
+            case GET_PNG -> get(query(n, random, false));
+            case GET_SVG -> get(query(n, random, true));
+            case POST_TEXT -> post(options(random, Map.of("type", "text", "text", "load test " + n)));
+            case POST_URL -> post(options(random, Map.of("type", "url", "url", "https://example.com/items/" + n)));
+            case POST_VCARD -> post(options(random, Map.of("type", "vcard", "payload", Map.of(
+                    "firstName", "Load", "lastName", "Tester " + n, "org", "Example & Co",
+                    "phone", "+1 555 " + (1000 + n % 9000), "email", "tester" + n + "@example.com"))));
+            case POST_SOCIAL -> post(options(random, Map.of("type", "social", "payload", links(n))));
+            case POST_IMAGE_URL -> post(options(random, Map.of("type", "imageUrl", "imageUrl", pick(uploads, random))));
+            case PAGE -> HttpRequest.newBuilder(resolve(pick(pages, random))).timeout(timeout)
+                    .header("Accept-Encoding", "gzip").build();
+            case UPLOAD_GET -> HttpRequest.newBuilder(resolve(pick(uploads, random))).timeout(timeout).build();
+            case UPLOAD -> upload(random);
+        };
+    }
+
+    private String query(int n, RandomGenerator random, boolean svg) {
+        StringBuilder query = new StringBuilder("/api/qr?text=")
+                .append(URLEncoder.encode("load test " + n, StandardCharsets.UTF_8))
+                .append("&size=").append(sizes[random.nextInt(sizes.length)]);
+        String theme = themes[random.nextInt(themes.length)];
+        if (!theme.equals("none"))
+            query.append("&theme=").append(theme);
+        if (svg)
+            query.append("&format=svg");
+        return query.toString();
+    }
+
+    private Map<String, Object> options(RandomGenerator random, Map<String, Object> body) {
+        Map<String, Object> withOptions = new LinkedHashMap<>(body);
+        withOptions.put("size", sizes[random.nextInt(sizes.length)]);
+        String theme = themes[random.nextInt(themes.length)];
+        if (!theme.equals("none"))
+            withOptions.put("theme", theme);
+        return withOptions;
+    }
+
+    private static Map<String, String> links(int n) {
+        return Map.of("facebook", "https://facebook.com/tester" + n, "twitter", "https://x.com/tester" + n,
+                "instagram", "https://instagram.com/tester" + n);
+    }
+
+    private HttpRequest get(String pathAndQuery) {
+        return HttpRequest.newBuilder(target.resolve(pathAndQuery)).timeout(timeout).build();
+    }
+
+    private HttpRequest post(Map<String, Object> body) {
+        return HttpRequest.newBuilder(target.resolve("/api/qr")).timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    // a small PNG of random pixels, so that every upload is a new file for the server
+    private HttpRequest upload(RandomGenerator random) throws IOException {
+        BufferedImage image = new BufferedImage(48, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++)
+                image.setRGB(x, y, random.nextInt(0x1000000));
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        String boundary = "loadtest" + Long.toHexString(random.nextLong());
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"load.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        return HttpRequest.newBuilder(target.resolve("/api/upload-image")).timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, png.toByteArray(), tail)))
+                .build();
+    }
+
+    // the server builds URLs from the host it was reached on; keep the path and send it to the target
+    private URI resolve(String url) {
+        return target.resolve(URI.create(url).getRawPath());
+    }
+
+    private static String pick(List<String> urls, RandomGenerator random) {
+        return urls.get(random.nextInt(urls.size()));
+    }
+
+    private static String decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        try {
+            return new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(
+                    new BufferedImageLuminanceSource(image)))).getText();
+        } catch (Exception e) {
+            throw new IOException("could not read the page URL back from the code", e);
+        }
+    }
+}
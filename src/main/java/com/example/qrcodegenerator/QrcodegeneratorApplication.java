@@ -2,12 +2,20 @@ package com.example.qrcodegenerator;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class QrcodegeneratorApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(QrcodegeneratorApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(QrcodegeneratorApplication.class, args);
+		// the batch profile (and a warmup-only training run) has done its work once run() returns;
+		// scheduler threads would keep it alive
+		if (context.getEnvironment().matchesProfiles("batch")
+				|| context.getEnvironment().getProperty("app.warmup.exit", Boolean.class, false))
+			System.exit(SpringApplication.exit(context));
 	}
 
 }
@@ -0,0 +1,330 @@
+package com.example.qrcodegenerator.cli;
+
+import com.example.qrcodegenerator.service.QrFormat;
+import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.RenderRejectedException;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code batch} profile: renders every row of a CSV or NDJSON file through
+ * {@link QrService} on the render pool, without a web server, and exits.
+ *
+ * <pre>
+ * java -jar qrcodegenerator.jar --spring.profiles.active=batch \
+ *     --app.batch.input=codes.csv --app.batch.output=out [--app.batch.layout=zip]
+ * </pre>
+ *
+ * Rows have a {@code text} column and optionally {@code name}, {@code size}, {@code fg},
+ * {@code bg}, {@code ecc} and {@code format}. Results are written in input order with at
+ * most {@code app.batch.max-in-flight} rows between reading and writing, so memory does
+ * not grow with the input. {@code checkpoint.properties} in the output directory records
+ * how far the output is complete; running the same command again continues from there.
+ * Rows that fail are listed in {@code errors.ndjson} and do not stop the run.
+ */
+@Component
+@Profile("batch")
+public class BatchCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchCommand.class);
+
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+
+    private final QrService qrService;
+    private final RenderScheduler renderScheduler;
+    private final ObjectMapper objectMapper;
+    private final String input;
+    private final String output;
+    private final boolean zip;
+    private final int shardSize;
+    private final long checkpointEvery;
+    private final long progressIntervalNanos;
+    private final int maxInFlight;
+
+    @Autowired
+    public BatchCommand(QrService qrService, RenderScheduler renderScheduler, ObjectMapper objectMapper,
+            @Value("${app.batch.input:}") String input,
+            @Value("${app.batch.output:batch-output}") String output,
+            @Value("${app.batch.layout:dir}") String layout,
+            @Value("${app.batch.shard-size:10000}") int shardSize,
+            @Value("${app.batch.checkpoint-every:10000}") long checkpointEvery,
+            @Value("${app.batch.progress-interval:10s}") Duration progressInterval,
+            @Value("${app.batch.max-in-flight:0}") int maxInFlight) {
+        this.qrService = qrService;
+        this.renderScheduler = renderScheduler;
+        this.objectMapper = objectMapper;
+        this.input = input;
+        this.output = output;
+        this.zip = "zip".equalsIgnoreCase(layout);
+        this.shardSize = shardSize;
+        this.checkpointEvery = checkpointEvery;
+        this.progressIntervalNanos = progressInterval.toNanos();
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (input.isBlank())
+            throw new IllegalArgumentException("app.batch.input is not set");
+        run(Paths.get(input), Paths.get(output));
+    }
+
+    /** Renders {@code inputFile} into {@code outputDir}, resuming from its checkpoint if there is one. */
+    public Summary run(Path inputFile, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        Path checkpointFile = outputDir.resolve("checkpoint.properties");
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile, inputFile);
+        if (checkpoint.complete()) {
+            log.info("Batch {} is already complete ({} rows)", inputFile, checkpoint.rows());
+            return new Summary(checkpoint.rows(), 0, 0);
+        }
+        if (checkpoint.rows() > 0)
+            log.info("Resuming batch {} after row {}", inputFile, checkpoint.rows());
+
+        Progress progress = new Progress(checkpoint.rows());
+        ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+        try (BatchInput rows = BatchInput.open(inputFile, checkpoint.offset(), objectMapper);
+                BatchOutput out = zip ? BatchOutput.zips(outputDir, shardSize)
+                        : BatchOutput.directories(outputDir, shardSize);
+                FileChannel errorLog = openErrors(outputDir.resolve("errors.ndjson"), checkpoint);
+                Writer errors = Channels.newWriter(errorLog, StandardCharsets.UTF_8)) {
+            long row = checkpoint.rows();
+            long checkpointed = row;
+            BatchInput.Row next;
+            while ((next = rows.next()) != null) {
+                row++;
+                inFlight.add(submit(row, next, rows.offset(), inFlight, out, errors, progress));
+                while (inFlight.size() >= maxInFlight || (!inFlight.isEmpty() && inFlight.peek().task().isDone())) {
+                    Pending done = inFlight.poll();
+                    if (write(done, out, errors, progress) && done.row() - checkpointed >= checkpointEvery) {
+                        errors.flush();
+                        new Checkpoint(done.row(), done.offset(), errorLog.position(), false)
+                                .save(checkpointFile, inputFile);
+                        checkpointed = done.row();
+                    }
+                }
+                progress.report(inFlight.size());
+            }
+            while (!inFlight.isEmpty())
+                write(inFlight.poll(), out, errors, progress);
+            out.close();
+            errors.flush();
+            new Checkpoint(row, rows.offset(), errorLog.position(), true).save(checkpointFile, inputFile);
+        } finally {
+            for (Pending pending : inFlight)
+                pending.task().cancel(false);
+        }
+        return progress.finish();
+    }
+
+    // rows after the checkpoint are done again, so the failures they logged are cut off first;
+    // a checkpoint that does not record the log's length leaves it as it is
+    private static FileChannel openErrors(Path file, Checkpoint checkpoint) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (checkpoint.errorBytes() >= 0 && checkpoint.errorBytes() < channel.size())
+            channel.truncate(checkpoint.errorBytes());
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private Pending submit(long row, BatchInput.Row next, long offset, ArrayDeque<Pending> inFlight,
+            BatchOutput out, Writer errors, Progress progress) throws IOException {
+        FutureTask<byte[]> task = new FutureTask<>(() -> render(next));
+        while (true) {
+            try {
+                renderScheduler.executor().execute(task);
+                return new Pending(row, name(row, next), offset, next.error(), task);
+            } catch (RenderRejectedException e) {
+                // the render queue is full: make room by finishing the oldest row
+                if (inFlight.isEmpty())
+                    sleep();
+                else
+                    write(inFlight.poll(), out, errors, progress);
+            }
+        }
+    }
+
+    private byte[] render(BatchInput.Row row) throws Exception {
+        if (row.error() != null)
+            return null;
+        Map<String, String> fields = row.fields();
+        String text = fields.get("text");
+        if (text == null || text.isEmpty())
+            throw new IllegalArgumentException("no text");
+        String size = fields.get("size");
+        String ecc = fields.get("ecc");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        qrService.prepare(text, size == null || size.isBlank() ? 300 : Integer.parseInt(size.trim()),
+                QrService.parseColor(fields.get("fg")), QrService.parseColor(fields.get("bg")),
+                QrFormat.parse(fields.get("format")),
+                ecc == null || ecc.isBlank() ? ErrorCorrectionLevel.L
+                        : ErrorCorrectionLevel.valueOf(ecc.trim().toUpperCase(Locale.ROOT)))
+                .writeTo(out);
+        return out.toByteArray();
+    }
+
+    // returns whether a checkpoint may be taken after this row
+    private boolean write(Pending pending, BatchOutput out, Writer errors, Progress progress) throws IOException {
+        String error = pending.error();
+        byte[] data = null;
+        if (error == null) {
+            try {
+                data = pending.task().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("batch interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            }
+        }
+        if (error != null) {
+            errors.write(objectMapper.writeValueAsString(Map.of("row", pending.row(), "error", error)));
+            errors.write('\n');
+            progress.failed();
+            // a row that produced nothing still completes its shard
+            return out.write(pending.row(), null, null);
+        }
+        progress.written();
+        return out.write(pending.row(), pending.name(), data);
+    }
+
+    private static String name(long row, BatchInput.Row next) {
+        String format = next.fields().get("format");
+        String extension = format != null && format.trim().equalsIgnoreCase("svg") ? ".svg" : ".png";
+        String name = next.fields().get("name");
+        if (name != null && SAFE_NAME.matcher(name).matches() && !name.startsWith("."))
+            return name + extension;
+        return "%09d".formatted(row) + extension;
+    }
+
+    private static void sleep() throws InterruptedIOException {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch interrupted");
+        }
+    }
+
+    private record Pending(long row, String name, long offset, String error, FutureTask<byte[]> task) {
+    }
+
+    /** Rows written and failed in this run, and the rows per second. */
+    public record Summary(long written, long failed, long rowsPerSecond) {
+    }
+
+    private final class Progress {
+
+        private final long start = System.nanoTime();
+        private final long firstRow;
+        private long written;
+        private long failed;
+        private long lastReport = start;
+        private long lastCount;
+
+        Progress(long firstRow) {
+            this.firstRow = firstRow;
+        }
+
+        void written() {
+            written++;
+        }
+
+        void failed() {
+            failed++;
+        }
+
+        void report(int inFlight) {
+            long now = System.nanoTime();
+            if (now - lastReport < progressIntervalNanos)
+                return;
+            long done = written + failed;
+            log.info("Batch: row {} ({} failed), {} rows/s, {} rows/s overall, {} in flight",
+                    firstRow + done, failed, rate(done - lastCount, now - lastReport), rate(done, now - start),
+                    inFlight);
+            lastReport = now;
+            lastCount = done;
+        }
+
+        Summary finish() {
+            long elapsed = System.nanoTime() - start;
+            long rate = rate(written + failed, elapsed);
+            log.info("Batch done: {} rows written, {} failed in {} s, {} rows/s", written, failed,
+                    elapsed / 1_000_000_000L, rate);
+            return new Summary(written, failed, rate);
+        }
+
+        private static long rate(long rows, long nanos) {
+            return nanos > 0 ? rows * 1_000_000_000L / nanos : 0;
+        }
+    }
+
+    /**
+     * How many rows are complete in the output, where the next one starts in the input and
+     * how long the error log was at that point (-1 if not recorded). Written to a temporary
+     * file and moved over the old one, so it is never half written.
+     */
+    record Checkpoint(long rows, long offset, long errorBytes, boolean complete) {
+
+        static Checkpoint load(Path file, Path input) throws IOException {
+            if (!Files.exists(file))
+                return new Checkpoint(0, 0, 0, false);
+            Properties properties = new Properties();
+            try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            String recorded = properties.getProperty("input");
+            if (recorded != null && !recorded.equals(input.toAbsolutePath().toString()))
+                throw new IllegalStateException("the output in " + file.getParent() + " belongs to " + recorded);
+            return new Checkpoint(Long.parseLong(properties.getProperty("rows", "0")),
+                    Long.parseLong(properties.getProperty("offset", "0")),
+                    Long.parseLong(properties.getProperty("errorBytes", "-1")),
+                    Boolean.parseBoolean(properties.getProperty("complete")));
+        }
+
+        void save(Path file, Path input) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("input", input.toAbsolutePath().toString());
+            properties.setProperty("rows", Long.toString(rows));
+            properties.setProperty("offset", Long.toString(offset));
+            properties.setProperty("errorBytes", Long.toString(errorBytes));
+            properties.setProperty("complete", Boolean.toString(complete));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.qrcodegenerator.cli;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads batch rows one at a time from a CSV file with a header row, or from NDJSON
+ * ({@code .ndjson} / {@code .jsonl}), and tracks the byte offset after each row so that a
+ * resumed run can seek straight past the rows it already rendered. Only the current row
+ * is held in memory.
+ */
+class BatchInput implements Closeable {
+
+    /** One input row; {@code error} is set when the row itself could not be parsed. */
+    record Row(Map<String, String> fields, String error) {
+    }
+
+    private final InputStream in;
+    private final boolean json;
+    private final ObjectMapper objectMapper;
+    private final List<String> header;
+    private byte[] line = new byte[256];
+    private long offset;
+
+    private BatchInput(InputStream in, boolean json, ObjectMapper objectMapper, List<String> header, long offset) {
+        this.in = in;
+        this.json = json;
+        this.objectMapper = objectMapper;
+        this.header = header;
+        this.offset = offset;
+    }
+
+    /**
+     * Opens {@code file} at {@code offset}, a value previously returned by {@link #offset()};
+     * 0 starts at the beginning. The CSV header is always read from the start of the file.
+     */
+    static BatchInput open(Path file, long offset, ObjectMapper objectMapper) throws IOException {
+        String name = file.getFileName().toString();
+        boolean json = name.endsWith(".ndjson") || name.endsWith(".jsonl");
+        List<String> header = List.of();
+        long start = offset;
+        if (!json) {
+            try (BatchInput first = new BatchInput(open(file, 0), false, objectMapper, List.of(), 0)) {
+                String headerLine = first.readRecord();
+                if (headerLine == null)
+                    throw new IOException(file + " has no header row");
+                header = parseCsv(headerLine).stream().map(String::trim).toList();
+                start = Math.max(offset, first.offset);
+            }
+        }
+        return new BatchInput(open(file, start), json, objectMapper, header, start);
+    }
+
+    private static InputStream open(Path file, long offset) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        // file channels skip by moving their position, without reading
+        in.skipNBytes(offset);
+        return new BufferedInputStream(in, 64 * 1024);
+    }
+
+    /** The next row, or null at the end of the input. Blank lines are skipped. */
+    Row next() throws IOException {
+        String record;
+        do {
+            record = readRecord();
+            if (record == null)
+                return null;
+        } while (record.isBlank());
+
+        if (json) {
+            try {
+                Map<?, ?> values = objectMapper.readValue(record, Map.class);
+                Map<String, String> fields = new HashMap<>();
+                values.forEach((k, v) -> {
+                    if (v != null)
+                        fields.put(k.toString(), v.toString());
+                });
+                return new Row(fields, null);
+            } catch (JacksonException e) {
+                return new Row(Map.of(), "invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        List<String> values = parseCsv(record);
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < Math.min(header.size(), values.size()); i++)
+            fields.put(header.get(i), values.get(i));
+        return new Row(fields, null);
+    }
+
+    /** The byte offset just past the last row returned. */
+    long offset() {
+        return offset;
+    }
+
+    // a CSV record continues onto the next line while a quoted field is open
+    private String readRecord() throws IOException {
+        String record = readLine();
+        if (json || record == null)
+            return record;
+        while (quotes(record) % 2 != 0) {
+            String more = readLine();
+            if (more == null)
+                break;
+            record = record + "\n" + more;
+        }
+        return record;
+    }
+
+    private String readLine() throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            offset++;
+            if (b == '\n')
+                break;
+            if (length == line.length)
+                line = Arrays.copyOf(line, length * 2);
+            line[length++] = (byte) b;
+        }
+        if (b == -1 && length == 0)
+            return null;
+        if (length > 0 && line[length - 1] == '\r')
+            length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int quotes(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"')
+                count++;
+        }
+        return count;
+    }
+
+    static List<String> parseCsv(String record) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
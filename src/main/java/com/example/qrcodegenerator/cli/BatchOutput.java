@@ -0,0 +1,135 @@
+package com.example.qrcodegenerator.cli;
+
+import com.example.qrcodegenerator.service.BatchService;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Where rendered rows go. Rows arrive in input order and are grouped into shards of a
+ * fixed number of rows, so a row always lands in the same shard and a resumed run
+ * rewrites exactly what an interrupted one may have left half done. Checkpoints fall on
+ * shard boundaries, so a shard is always written from its first row, and a name that an
+ * earlier row of the shard already used gets the row number added.
+ */
+interface BatchOutput extends Closeable {
+
+    /**
+     * Writes row {@code row} (1-based); a null {@code name} marks a row that failed and
+     * has nothing to write. Returns true when this row ends a shard and every row up to and
+     * including it is complete on disk, i.e. when a checkpoint may be taken.
+     */
+    boolean write(long row, String name, byte[] data) throws IOException;
+
+    static BatchOutput directories(Path dir, int shardSize) {
+        return new ShardedDirectories(dir, shardSize);
+    }
+
+    static BatchOutput zips(Path dir, int shardSize) {
+        return new RollingZips(dir, shardSize);
+    }
+
+    // code.png becomes code-000000042.png when row 42 repeats it; the row number alone may
+    // be a name an earlier row asked for too, hence the loop
+    private static String unique(Set<String> names, long row, String name) {
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        String candidate = name;
+        for (int n = 1; !names.add(candidate); n++)
+            candidate = base + "-%09d".formatted(row) + (n > 1 ? "-" + n : "") + extension;
+        return candidate;
+    }
+
+    /** {@code <dir>/00000/<name>}, {@code <dir>/00001/<name>}, ... */
+    final class ShardedDirectories implements BatchOutput {
+
+        private final Path dir;
+        private final int shardSize;
+        private final Set<String> names = new HashSet<>();
+        private long shard = -1;
+        private Path shardDir;
+
+        ShardedDirectories(Path dir, int shardSize) {
+            this.dir = dir;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        public boolean write(long row, String name, byte[] data) throws IOException {
+            long index = (row - 1) / shardSize;
+            if (index != shard) {
+                shard = index;
+                shardDir = Files.createDirectories(dir.resolve("%05d".formatted(index)));
+                names.clear();
+            }
+            if (name != null)
+                Files.write(shardDir.resolve(unique(names, row, name)), data);
+            return row % shardSize == 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * {@code <dir>/part-00000.zip}, ... Each part is written under a temporary name and
+     * renamed once complete, so a part that exists is always a whole, readable ZIP.
+     */
+    final class RollingZips implements BatchOutput {
+
+        private final Path dir;
+        private final int shardSize;
+        private final Set<String> names = new HashSet<>();
+        private long part = -1;
+        private Path partFile;
+        private ZipOutputStream zip;
+
+        RollingZips(Path dir, int shardSize) {
+            this.dir = dir;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        public boolean write(long row, String name, byte[] data) throws IOException {
+            long index = (row - 1) / shardSize;
+            if (index != part) {
+                finishPart();
+                part = index;
+                partFile = dir.resolve("part-%05d.zip".formatted(index));
+                Files.createDirectories(dir);
+                zip = new ZipOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(partFile.resolveSibling(partFile.getFileName() + ".tmp")), 64 * 1024));
+                names.clear();
+            }
+            if (name != null)
+                BatchService.writeStored(zip, unique(names, row, name), data);
+            if (row % shardSize != 0)
+                return false;
+            finishPart();
+            return true;
+        }
+
+        private void finishPart() throws IOException {
+            if (zip == null)
+                return;
+            zip.close();
+            zip = null;
+            Files.move(partFile.resolveSibling(partFile.getFileName() + ".tmp"), partFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            finishPart();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.qrcodegenerator.config;
+
+import com.example.qrcodegenerator.service.QrFormat;
+import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.SheetService;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a few representative codes before the application reports ready, so that the
+ * first real request does not pay for class loading, AWT/ImageIO and font setup, ZXing
+ * tables, Jackson deserializers and the first JIT compilations.
+ *
+ * <p>Readiness ({@code /actuator/health/readiness}) only turns to ACCEPTING_TRAFFIC once
+ * all application runners have returned, so a load balancer keeps traffic away until this
+ * is done. Codes are first rendered in-process; then, when a web server is running, the
+ * same payloads go through it once so that the MVC and JSON binding paths are warm too.
+ * Warmup problems are logged and never stop the application.
+ */
+@Component
+@Profile("!batch")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    // the shapes real traffic has: URLs, vCards, WiFi credentials, non-ASCII text
+    private static final List<String> PAYLOADS = List.of(
+            "https://example.com/warmup?table=12",
+            "BEGIN:VCARD\nVERSION:3.0\nN:Warmup;Jane\nFN:Jane Warmup\nTEL:+15551234567\nEND:VCARD\n",
+            "WIFI:T:WPA;S:warmup;P:warmup-password;;",
+            "Grüße – warmup");
+
+    @Autowired
+    private QrService qrService;
+
+    @Autowired
+    private SheetService sheetService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.rounds:20}")
+    private int rounds;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled)
+            return;
+        long start = System.nanoTime();
+        try {
+            warmLibraries();
+            for (int round = 0; round < rounds; round++) {
+                for (String text : PAYLOADS) {
+                    // a different size each round, so renders are not simply served from the cache
+                    int size = 200 + round * 8;
+                    qrService.prepare(text, size, null, null, QrFormat.PNG, ErrorCorrectionLevel.L)
+                            .writeTo(OutputStream.nullOutputStream());
+                    qrService.prepare(text, size, 0xFF3F51B5, 0xFFFFFFFF, QrFormat.SVG, ErrorCorrectionLevel.M)
+                            .writeTo(OutputStream.nullOutputStream());
+                }
+            }
+            long inProcess = System.nanoTime() - start;
+            Integer port = environment.getProperty("local.server.port", Integer.class);
+            if (port != null && port > 0)
+                warmHttp(port);
+            log.info("Warmed up in {} ms ({} ms in-process)", (System.nanoTime() - start) / 1_000_000,
+                    inProcess / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Warmup failed after {} ms; continuing", (System.nanoTime() - start) / 1_000_000, e);
+        }
+    }
+
+    private void warmLibraries() throws Exception {
+        // ImageIO's plugin registry, used for uploads and the zxing PNG writer
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", png);
+        ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+
+        // a sheet with captions loads AWT fonts and text rendering, and the PDF path
+        SheetService.Prepared sheet = sheetService.prepare(new SheetService.Sheet(PAYLOADS.subList(0, 2),
+                List.of("Warmup 1", "Warmup 2"), 2, 0, 160, 16, 0xFF000000, 0xFFFFFFFF, ErrorCorrectionLevel.L));
+        sheetService.writePng(sheet, OutputStream.nullOutputStream());
+        sheetService.writePdf(sheet, OutputStream.nullOutputStream());
+
+        objectMapper.readValue(objectMapper.writeValueAsString(Map.of("type", "text", "text", "warmup")), Map.class);
+    }
+
+    // GET and POST /api/qr through the real server; landing-page types are left out because they store pages
+    private void warmHttp(int port) throws Exception {
+        String base = "http://127.0.0.1:" + port + "/api/qr";
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build()) {
+            for (String text : PAYLOADS) {
+                send(client, HttpRequest.newBuilder(URI.create(base + "?size=300&text="
+                        + URLEncoder.encode(text, StandardCharsets.UTF_8))).GET());
+                send(client, HttpRequest.newBuilder(URI.create(base + "?format=svg&theme=forest&text="
+                        + URLEncoder.encode(text, StandardCharsets.UTF_8))).GET());
+            }
+            List<Map<String, Object>> bodies = List.of(
+                    Map.of("type", "url", "url", PAYLOADS.get(0), "size", 300, "theme", "sunset"),
+                    Map.of("type", "text", "text", PAYLOADS.get(3), "fgColor", "#112233"),
+                    Map.of("type", "vcard", "payload", Map.of("firstName", "Jane", "lastName", "Warmup",
+                            "phone", "+15551234567", "email", "jane@example.com")));
+            for (Map<String, Object> body : bodies) {
+                send(client, HttpRequest.newBuilder(URI.create(base))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body))));
+            }
+        }
+    }
+
+    private static void send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        HttpResponse<Void> response = client.send(request.timeout(Duration.ofSeconds(10)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200)
+            log.warn("Warmup request {} answered {}", response.request().uri(), response.statusCode());
+    }
+}
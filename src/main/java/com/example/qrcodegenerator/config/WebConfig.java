@@ -1,26 +0,0 @@
-package com.example.qrcodegenerator.config;
-
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-@Configuration
-public class WebConfig implements WebMvcConfigurer {
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadDir = Paths.get(System.getProperty("user.dir"), "uploads");
-        String uploadPath = uploadDir.toFile().getAbsolutePath();
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath + File.separator);
-
-        Path pagesDir = Paths.get(System.getProperty("user.dir"), "pages");
-        String pagesPath = pagesDir.toFile().getAbsolutePath();
-        registry.addResourceHandler("/pages/**")
-                .addResourceLocations("file:" + pagesPath + File.separator);
-    }
-}
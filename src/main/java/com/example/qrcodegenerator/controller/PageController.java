@@ -0,0 +1,146 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.service.ByteBoundedCache;
+import com.example.qrcodegenerator.service.PageStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves landing pages from the {@link PageStore}. Pages written before the store existed
+ * ({@code pages/<millis>-<random>.html}) are still read from their files.
+ *
+ * <p>Scanned codes make these the busiest URLs, so hot pages are kept in memory together
+ * with their gzip encoding, which is computed once per page. Serving never touches the
+ * render pool.
+ */
+@RestController
+public class PageController {
+
+    private static final MediaType HTML = MediaType.parseMediaType("text/html;charset=UTF-8");
+    private static final Pattern STORE_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final Pattern LEGACY_ID = Pattern.compile("\\d+-\\d+");
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    @Autowired
+    private PageStore pageStore;
+
+    private final ByteBoundedCache<String, Page> pages;
+
+    public PageController(@Value("${app.pages.cache.max-bytes:16777216}") long cacheMaxBytes) {
+        this.pages = new ByteBoundedCache<>(cacheMaxBytes, Page::weight);
+    }
+
+    @GetMapping("/pages/{id}.html")
+    public ResponseEntity<byte[]> page(@PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) throws IOException {
+        if (STORE_ID.matcher(id).matches()) {
+            Page page = page(id);
+            if (page == null)
+                return ResponseEntity.notFound().build();
+            // the id is the content hash, so it doubles as a strong ETag that never goes
+            // stale; the gzip encoding is a different representation and gets its own, but
+            // only when there is one to send
+            boolean gzip = page.gzip() != null && acceptsGzip(acceptEncoding);
+            if (webRequest.checkNotModified("\"" + id + (gzip ? ".gz" : "") + "\""))
+                return null;
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(HTML)
+                    .cacheControl(IMMUTABLE)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+            if (gzip)
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(page.gzip());
+            return response.body(page.html());
+        }
+
+        if (LEGACY_ID.matcher(id).matches()) {
+            Path file = Paths.get(System.getProperty("user.dir"), "pages", id + ".html");
+            if (Files.isRegularFile(file)) {
+                // never rewritten either: the name was unique when the page was saved
+                if (webRequest.checkNotModified("\"" + id + "\""))
+                    return null;
+                return ResponseEntity.ok().contentType(HTML).cacheControl(IMMUTABLE).body(Files.readAllBytes(file));
+            }
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    // gzip (or x-gzip) is acceptable unless its qvalue is 0; when it is not listed, a "*"
+    // entry decides (RFC 9110 12.5.3)
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return false;
+        boolean wildcard = false;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.equals("gzip") || coding.equals("x-gzip"))
+                return qvalue(parts) > 0;
+            if (coding.equals("*"))
+                wildcard = qvalue(parts) > 0;
+        }
+        return wildcard;
+    }
+
+    // a malformed qvalue counts as 0
+    private static double qvalue(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+                    && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private Page page(String id) throws IOException {
+        Page page = pages.get(id);
+        if (page != null)
+            return page;
+        byte[] html = pageStore.get(id);
+        if (html == null)
+            return null;
+        return pages.put(id, new Page(html, gzip(html)));
+    }
+
+    // null when compression does not pay off
+    private static byte[] gzip(byte[] html) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(html.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(html);
+        }
+        return out.size() < html.length ? out.toByteArray() : null;
+    }
+
+    private record Page(byte[] html, byte[] gzip) {
+
+        int weight() {
+            return html.length + (gzip != null ? gzip.length : 0) + 96;
+        }
+    }
+}
@@ -1,56 +1,87 @@
 package com.example.qrcodegenerator.controller;
 
+import com.example.qrcodegenerator.payload.PayloadContext;
+import com.example.qrcodegenerator.payload.PayloadType;
+import com.example.qrcodegenerator.payload.PayloadTypes;
+import com.example.qrcodegenerator.service.BatchService;
+import com.example.qrcodegenerator.service.QrFormat;
 import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.RenderMetrics;
+import com.example.qrcodegenerator.service.RenderRejectedException;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import com.example.qrcodegenerator.service.SheetService;
+import com.example.qrcodegenerator.service.UploadStore;
 import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api")
 public class QrController {
 
+    private static final Logger log = LoggerFactory.getLogger(QrController.class);
+
+    private static final String SVG_VALUE = "image/svg+xml";
+
     @Autowired
     private QrService qrService;
 
+    @Autowired
+    private BatchService batchService;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private SheetService sheetService;
+
+    @Autowired
+    private RenderMetrics metrics;
+
+    @Autowired
+    private PayloadTypes payloadTypes;
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Value("${app.public-url:}")
     private String publicUrl;
 
-    private Integer parseColor(String hex) {
-        if (hex == null)
-            return null;
-        String h = hex.trim();
-        if (h.isEmpty())
-            return null;
-        if (h.startsWith("#"))
-            h = h.substring(1);
-        if (h.length() == 6)
-            h = "FF" + h;
-        if (h.length() != 8)
-            return null;
-        try {
-            long val = Long.parseLong(h, 16);
-            return (int) val;
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
-
     private Integer[] colorsForTheme(String theme) {
         if (theme == null || theme.isBlank())
             return null;
@@ -68,242 +99,226 @@ public class QrController {
         return null;
     }
 
-    @GetMapping(value = "/qr", produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> generateQr(@RequestParam("text") String text,
+    // L unless asked otherwise; unknown levels are a bad request
+    private static ErrorCorrectionLevel parseEcc(String ecc) {
+        if (ecc == null || ecc.isBlank())
+            return ErrorCorrectionLevel.L;
+        return ErrorCorrectionLevel.valueOf(ecc.trim().toUpperCase(Locale.ROOT));
+    }
+
+    // Theme preset first, explicit hex colors override it; nulls mean the service defaults
+    private Integer[] resolveColors(String theme, String fg, String bg) {
+        Integer onColor = null;
+        Integer offColor = null;
+        Integer[] preset = colorsForTheme(theme);
+        if (preset != null) {
+            onColor = preset[0];
+            offColor = preset[1];
+        }
+        Integer fgParsed = QrService.parseColor(fg);
+        Integer bgParsed = QrService.parseColor(bg);
+        if (fgParsed != null)
+            onColor = fgParsed;
+        if (bgParsed != null)
+            offColor = bgParsed;
+        return new Integer[] { onColor, offColor };
+    }
+
+    private String baseUrl(HttpServletRequest request) {
+        return request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+    }
+
+    private PayloadContext context(HttpServletRequest request) {
+        return new PayloadContext(baseUrl(request), publicBaseUrl(request));
+    }
+
+    // Check for ngrok URL in headers or use configured public URL
+    private String publicBaseUrl(HttpServletRequest request) {
+        String baseUrl = publicUrl;
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            baseUrl = request.getHeader("x-forwarded-proto") != null
+                    ? request.getHeader("x-forwarded-proto") + "://" + request.getHeader("x-forwarded-host")
+                    : baseUrl(request);
+        }
+        return baseUrl;
+    }
+
+    @GetMapping(value = "/qr", produces = { MediaType.IMAGE_PNG_VALUE, SVG_VALUE })
+    public ResponseEntity<StreamingResponseBody> generateQr(@RequestParam("text") String text,
             @RequestParam(value = "size", required = false, defaultValue = "300") int size,
             @RequestParam(value = "theme", required = false) String theme,
             @RequestParam(value = "fg", required = false) String fg,
-            @RequestParam(value = "bg", required = false) String bg) {
+            @RequestParam(value = "bg", required = false) String bg,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "ecc", required = false) String ecc,
+            WebRequest webRequest) {
+        metrics.countRequest("text");
         try {
-            Integer onColor = null;
-            Integer offColor = null;
-            Integer[] preset = colorsForTheme(theme);
-            if (preset != null) {
-                onColor = preset[0];
-                offColor = preset[1];
-            }
-            Integer fgParsed = parseColor(fg);
-            Integer bgParsed = parseColor(bg);
-            if (fgParsed != null)
-                onColor = fgParsed;
-            if (bgParsed != null)
-                offColor = bgParsed;
-
-            byte[] png = (onColor != null || offColor != null)
-                    ? qrService.generatePng(text, size, onColor, offColor)
-                    : qrService.generatePng(text, size);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentLength(png.length);
-            return new ResponseEntity<>(png, headers, HttpStatus.OK);
-        } catch (WriterException | IOException e) {
+            QrFormat qrFormat = QrFormat.parse(format);
+            Integer[] colors = resolveColors(theme, fg, bg);
+            ErrorCorrectionLevel level = parseEcc(ecc);
+            // sets the ETag header and answers 304 when If-None-Match already has it; the tag
+            // follows from the parameters, so a revalidation never waits for a render slot
+            if (webRequest.checkNotModified(qrService.etag(text, size, colors[0], colors[1], qrFormat, level)))
+                return null;
+            return qrResponse(qrService.prepare(text, size, colors[0], colors[1], qrFormat, level));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (WriterException e) {
+            log.warn("QR encoding failed for GET /api/qr", e);
+            metrics.countError(e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    @PostMapping(value = "/qr", produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> generateQrPost(@RequestBody Map<String, Object> body,
+    /**
+     * Renders a body of any registered {@link PayloadType}: {@code type} picks the type and
+     * the rest of the body is bound to that type's record.
+     */
+    @PostMapping(value = "/qr", produces = { MediaType.IMAGE_PNG_VALUE, SVG_VALUE })
+    public ResponseEntity<StreamingResponseBody> generateQrPost(@RequestBody JsonNode body,
             HttpServletRequest request) {
         try {
-            String type = (String) body.getOrDefault("type", "text");
-            int size = ((Number) body.getOrDefault("size", 300)).intValue();
-            String content = "";
-            String theme = (String) body.getOrDefault("theme", "");
-            String fgColor = (String) body.getOrDefault("fgColor", "");
-            String bgColor = (String) body.getOrDefault("bgColor", "");
-
-            if ("text".equalsIgnoreCase(type)) {
-                content = (String) body.getOrDefault("text", "");
-            } else if ("url".equalsIgnoreCase(type)) {
-                content = (String) body.getOrDefault("url", "");
-            } else if ("social".equalsIgnoreCase(type)) {
-                // Generate HTML landing page for social links
-                @SuppressWarnings("unchecked")
-                Map<String, String> payload = (Map<String, String>) body.getOrDefault("payload", Map.of());
-
-                // Create HTML page
-                StringBuilder html = new StringBuilder();
-                html.append("<!DOCTYPE html>\n");
-                html.append("<html>\n<head>\n");
-                html.append(
-                        "<meta charset='utf-8'><meta name='viewport' content='width=device-width, initial-scale=1'>\n");
-                html.append("<title>Social Links</title>\n");
-                html.append("<style>\n");
-                html.append(
-                        "body { font-family: Arial, sans-serif; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); ");
-                html.append(
-                        "min-height: 100vh; display: flex; align-items: center; justify-content: center; margin: 0; }\n");
-                html.append(
-                        ".container { background: white; border-radius: 16px; padding: 40px; box-shadow: 0 20px 60px rgba(0,0,0,0.3); ");
-                html.append("max-width: 400px; text-align: center; }\n");
-                html.append("h1 { color: #333; margin-bottom: 30px; }\n");
-                html.append(".social-links { display: flex; flex-direction: column; gap: 12px; }\n");
-                html.append("a { padding: 14px 24px; border-radius: 8px; text-decoration: none; font-weight: 600; ");
-                html.append("transition: all 0.3s ease; display: block; }\n");
-                html.append("a:hover { transform: translateY(-2px); box-shadow: 0 10px 25px rgba(0,0,0,0.2); }\n");
-                html.append(".facebook { background: #1877f2; color: white; }\n");
-                html.append(".twitter { background: #000; color: white; }\n");
-                html.append(
-                        ".instagram { background: linear-gradient(45deg, #f09433 0%,#e6683c 25%,#dc2743 50%,#cc2366 75%,#bc1888 100%); color: white; }\n");
-                html.append(".linkedin { background: #0a66c2; color: white; }\n");
-                html.append("</style>\n</head>\n<body>\n");
-                html.append("<div class='container'>\n");
-                html.append("<h1>Follow Me</h1>\n");
-                html.append("<div class='social-links'>\n");
-
-                if (payload.containsKey("facebook") && !payload.get("facebook").isBlank()) {
-                    html.append("<a href='").append(payload.get("facebook"))
-                            .append("' class='facebook' target='_blank'>Facebook</a>\n");
-                }
-                if (payload.containsKey("twitter") && !payload.get("twitter").isBlank()) {
-                    html.append("<a href='").append(payload.get("twitter"))
-                            .append("' class='twitter' target='_blank'>Twitter / X</a>\n");
-                }
-                if (payload.containsKey("instagram") && !payload.get("instagram").isBlank()) {
-                    html.append("<a href='").append(payload.get("instagram"))
-                            .append("' class='instagram' target='_blank'>Instagram</a>\n");
-                }
-                if (payload.containsKey("linkedin") && !payload.get("linkedin").isBlank()) {
-                    html.append("<a href='").append(payload.get("linkedin"))
-                            .append("' class='linkedin' target='_blank'>LinkedIn</a>\n");
-                }
-
-                html.append("</div>\n</div>\n</body>\n</html>\n");
-
-                // Save HTML file
-                String pagesDir = System.getProperty("user.dir") + File.separator + "pages";
-                File dir = new File(pagesDir);
-                if (!dir.exists())
-                    dir.mkdirs();
-
-                String pageId = System.currentTimeMillis() + "-" + (int) (Math.random() * 10000);
-                File htmlFile = new File(dir, pageId + ".html");
-                try (OutputStream os = new FileOutputStream(htmlFile)) {
-                    os.write(html.toString().getBytes(StandardCharsets.UTF_8));
-                }
-
-                // QR code points to the HTML page
-                String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
-                String pageUrl = baseUrl + "/pages/" + pageId + ".html";
-                content = pageUrl;
-            } else if ("vcard".equalsIgnoreCase(type)) {
-                @SuppressWarnings("unchecked")
-                Map<String, String> payload = (Map<String, String>) body.getOrDefault("payload", Map.of());
-                String fn = payload.getOrDefault("firstName", "");
-                String ln = payload.getOrDefault("lastName", "");
-                String org = payload.getOrDefault("org", "");
-                String title = payload.getOrDefault("title", "");
-                String phone = payload.getOrDefault("phone", "");
-                String email = payload.getOrDefault("email", "");
-                String urlv = payload.getOrDefault("url", "");
-                String addr = payload.getOrDefault("address", "");
-
-                StringBuilder v = new StringBuilder();
-                v.append("BEGIN:VCARD\n");
-                v.append("VERSION:3.0\n");
-                v.append("N:").append(ln).append(";").append(fn).append("\n");
-                v.append("FN:").append(fn).append(" ").append(ln).append("\n");
-                if (!org.isBlank())
-                    v.append("ORG:").append(org).append("\n");
-                if (!title.isBlank())
-                    v.append("TITLE:").append(title).append("\n");
-                if (!phone.isBlank())
-                    v.append("TEL:").append(phone).append("\n");
-                if (!email.isBlank())
-                    v.append("EMAIL:").append(email).append("\n");
-                if (!addr.isBlank())
-                    v.append("ADR:").append(addr).append("\n");
-                if (!urlv.isBlank())
-                    v.append("URL:").append(urlv).append("\n");
-                v.append("END:VCARD\n");
-                content = v.toString();
-            } else if ("imageUrl".equalsIgnoreCase(type)) {
-                String imageUrl = (String) body.getOrDefault("imageUrl", "");
-
-                // Extract just the path part if it's a full URL
-                String imagePath = imageUrl;
-                if (imageUrl.contains("://")) {
-                    // Extract path from full URL (e.g., "http://localhost:9091/uploads/file.jpg" ->
-                    // "/uploads/file.jpg")
-                    imagePath = imageUrl.substring(imageUrl.indexOf("/", imageUrl.indexOf("://") + 3));
-                }
-
-                // Create HTML page that displays the image
-                StringBuilder html = new StringBuilder();
-                html.append("<!DOCTYPE html>\n");
-                html.append("<html>\n<head>\n");
-                html.append(
-                        "<meta charset='utf-8'><meta name='viewport' content='width=device-width, initial-scale=1'>\n");
-                html.append("<title>Image</title>\n");
-                html.append("<style>\n");
-                html.append("* { margin: 0; padding: 0; box-sizing: border-box; }\n");
-                html.append(
-                        "body { font-family: Arial, sans-serif; background: #f0f0f0; min-height: 100vh; display: flex; align-items: center; justify-content: center; }\n");
-                html.append(
-                        ".container { background: white; border-radius: 12px; padding: 20px; box-shadow: 0 10px 40px rgba(0,0,0,0.2); max-width: 90vw; }\n");
-                html.append("img { max-width: 100%; height: auto; border-radius: 8px; display: block; }\n");
-                html.append(
-                        ".download-btn { display: block; margin-top: 20px; padding: 12px 24px; background: #667eea; color: white; text-decoration: none; border-radius: 8px; text-align: center; font-weight: 600; transition: all 0.3s ease; }\n");
-                html.append(".download-btn:hover { background: #764ba2; transform: translateY(-2px); }\n");
-                html.append("</style>\n</head>\n<body>\n");
-                html.append("<div class='container'>\n");
-
-                // Check for ngrok URL in headers or use configured public URL
-                String baseUrl = publicUrl;
-                if (baseUrl == null || baseUrl.isEmpty()) {
-                    baseUrl = request.getHeader("x-forwarded-proto") != null
-                            ? request.getHeader("x-forwarded-proto") + "://" + request.getHeader("x-forwarded-host")
-                            : request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
-                }
-
-                html.append("<img src='").append(baseUrl).append(imagePath).append("' alt='QR Code Image'>\n");
-                html.append("<a href='").append(baseUrl).append(imagePath)
-                        .append("' download class='download-btn'>Download Image</a>\n");
-                html.append("</div>\n</body>\n</html>\n");
-
-                // Save HTML file
-                String pagesDir = System.getProperty("user.dir") + File.separator + "pages";
-                File dir = new File(pagesDir);
-                if (!dir.exists())
-                    dir.mkdirs();
-
-                String pageId = System.currentTimeMillis() + "-" + (int) (Math.random() * 10000);
-                File htmlFile = new File(dir, pageId + ".html");
-                try (OutputStream os = new FileOutputStream(htmlFile)) {
-                    os.write(html.toString().getBytes(StandardCharsets.UTF_8));
-                }
-
-                // QR code points to the image page
-                String pageUrl = baseUrl + "/pages/" + pageId + ".html";
-                content = pageUrl;
-            } else {
-                content = (String) body.getOrDefault("text", "");
-            }
+            QrOptions options = QrOptions.of(body);
+            return qrResponse(prepareBody(body, options, QrFormat.parse(options.format()), context(request)));
+        } catch (RenderRejectedException e) {
+            throw e;
+        } catch (IllegalArgumentException | JacksonException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.warn("QR generation failed for POST /api/qr (type {})", PayloadTypes.typeName(body), e);
+            metrics.countError(e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // The body is written straight to the response; the length is only known for cache hits
+    private ResponseEntity<StreamingResponseBody> qrResponse(QrService.Render qr) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(qr.format().mediaType());
+        if (qr.contentLength() >= 0)
+            headers.setContentLength(qr.contentLength());
+        headers.set("X-QR-Version", Integer.toString(qr.version()));
+        headers.set("X-QR-ECC", qr.ecc().name());
+        return new ResponseEntity<>(qr::writeTo, headers, HttpStatus.OK);
+    }
 
-            Integer onColor = null;
-            Integer offColor = null;
-            Integer[] preset = colorsForTheme(theme);
-            if (preset != null) {
-                onColor = preset[0];
-                offColor = preset[1];
+    /**
+     * Accepts a JSON array or NDJSON stream of {@code POST /qr} bodies and streams back a
+     * ZIP of the rendered codes; see {@link BatchService#writeZip} for entry naming.
+     */
+    @PostMapping(value = "/qr/batch", consumes = { MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE }, produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> generateQrBatch(HttpServletRequest request) {
+        PayloadContext context = context(request);
+        StreamingResponseBody zip = out -> {
+            try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+                batchService.writeZip(batchJobs(parser, context), out);
             }
-            Integer fgParsed = parseColor(fgColor);
-            Integer bgParsed = parseColor(bgColor);
-            if (fgParsed != null)
-                onColor = fgParsed;
-            if (bgParsed != null)
-                offColor = bgParsed;
-
-            byte[] png = (onColor != null || offColor != null)
-                    ? qrService.generatePng(content, size, onColor, offColor)
-                    : qrService.generatePng(content, size);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentLength(png.length);
-            return new ResponseEntity<>(png, headers, HttpStatus.OK);
-        } catch (Exception e) {
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename("qr-codes.zip").build());
+        return new ResponseEntity<>(zip, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Lays out {@code contents} on one sheet ({@code columns}, optional {@code rows},
+     * {@code tileSize}, {@code gap}, optional {@code captions}) and returns it as a PNG or,
+     * with {@code "format": "pdf"}, a vector PDF. Colors and {@code ecc} work as for
+     * {@code POST /qr}.
+     */
+    @PostMapping(value = "/qr/sheet", produces = { MediaType.IMAGE_PNG_VALUE, MediaType.APPLICATION_PDF_VALUE })
+    public ResponseEntity<byte[]> generateSheet(@RequestBody Map<String, Object> body) throws IOException {
+        metrics.countRequest("sheet");
+        SheetService.Prepared sheet;
+        boolean pdf;
+        try {
+            String format = (String) body.getOrDefault("format", "png");
+            pdf = "pdf".equalsIgnoreCase(format);
+            if (!pdf && !"png".equalsIgnoreCase(format))
+                throw new IllegalArgumentException("Unsupported format: " + format);
+            Integer[] colors = resolveColors((String) body.getOrDefault("theme", ""),
+                    (String) body.getOrDefault("fgColor", ""), (String) body.getOrDefault("bgColor", ""));
+            sheet = sheetService.prepare(new SheetService.Sheet(
+                    strings(body.get("contents")),
+                    body.get("captions") != null ? strings(body.get("captions")) : null,
+                    ((Number) body.getOrDefault("columns", 4)).intValue(),
+                    ((Number) body.getOrDefault("rows", 0)).intValue(),
+                    ((Number) body.getOrDefault("tileSize", 300)).intValue(),
+                    ((Number) body.getOrDefault("gap", 16)).intValue(),
+                    colors[0] != null ? colors[0] : 0xFF000000,
+                    colors[1] != null ? colors[1] : 0xFFFFFFFF,
+                    parseEcc((String) body.get("ecc"))));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (WriterException e) {
+            log.warn("QR encoding failed for POST /api/qr/sheet", e);
+            metrics.countError(e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+
+        // rendered on the render pool before anything is sent, so a full queue is still a 503
+        byte[] content = pdf ? sheetService.renderPdf(sheet) : sheetService.renderPng(sheet);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(pdf ? MediaType.APPLICATION_PDF : MediaType.IMAGE_PNG);
+        headers.setContentDisposition(
+                ContentDisposition.inline().filename(pdf ? "qr-sheet.pdf" : "qr-sheet.png").build());
+        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+    }
+
+    private static List<String> strings(Object values) {
+        if (!(values instanceof List<?> list))
+            throw new IllegalArgumentException("expected a list");
+        return list.stream().map(value -> value != null ? value.toString() : "").toList();
+    }
+
+    private Iterator<Callable<byte[]>> batchJobs(JsonParser parser, PayloadContext context) {
+        // a JSON array is unwrapped; otherwise whitespace-separated root values (NDJSON)
+        // are read one by one
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.START_ARRAY)
+            first = parser.nextToken();
+        if (first == null || first == JsonToken.END_ARRAY)
+            return Collections.emptyIterator();
+        MappingIterator<JsonNode> bodies = objectMapper.readerFor(JsonNode.class).readValues(parser);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return bodies.hasNext();
+            }
+
+            @Override
+            public Callable<byte[]> next() {
+                JsonNode body = bodies.next();
+                return () -> renderBody(body, context);
+            }
+        };
+    }
+
+    private QrService.Render prepareBody(JsonNode body, QrOptions options, QrFormat format, PayloadContext context)
+            throws WriterException, IOException {
+        ErrorCorrectionLevel ecc = parseEcc(options.ecc());
+        metrics.countRequest(PayloadTypes.typeName(body));
+        String content = payloadTypes.content(body, context);
+        Integer[] colors = resolveColors(options.theme(), options.fgColor(), options.bgColor());
+        return qrService.prepare(content, options.size(), colors[0], colors[1], format, ecc);
+    }
+
+    // batch entries are always PNG
+    byte[] renderBody(JsonNode body, PayloadContext context) throws WriterException, IOException {
+        QrOptions options = QrOptions.of(body);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        prepareBody(body, options, QrFormat.PNG, context).writeTo(png);
+        return png.toByteArray();
+    }
+
+    @ExceptionHandler(RenderRejectedException.class)
+    public ResponseEntity<Void> renderRejected(RenderRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
     }
 
     @PostMapping("/upload-image")
@@ -313,23 +328,30 @@ public class QrController {
         }
 
         try {
-            String uploadsDir = System.getProperty("user.dir") + File.separator + "uploads";
-            File dir = new File(uploadsDir);
-            if (!dir.exists())
-                dir.mkdirs();
-
-            String original = StringUtils.cleanPath(file.getOriginalFilename());
-            String filename = System.currentTimeMillis() + "-" + URLEncoder.encode(original, StandardCharsets.UTF_8);
-            File dest = new File(dir, filename);
-            try (OutputStream os = new FileOutputStream(dest)) {
-                os.write(file.getBytes());
+            // streamed from the part to disk; the upload never sits on the heap
+            long start = System.nanoTime();
+            UploadStore.Stored stored;
+            try (InputStream in = file.getInputStream()) {
+                stored = uploadStore.store(in);
             }
+            metrics.record(RenderMetrics.Stage.UPLOAD_WRITE, System.nanoTime() - start);
 
-            String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
-            String url = baseUrl + "/uploads/" + filename;
+            String url = baseUrl(request) + "/uploads/" + stored.name();
             return ResponseEntity.ok(Map.of("url", url));
+        } catch (UploadStore.RejectedUploadException ex) {
+            return ex.isTooLarge() ? uploadTooLarge()
+                    : ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of("error", "unsupported_type"));
         } catch (IOException ex) {
+            log.warn("Saving upload {} failed", file.getOriginalFilename(), ex);
+            metrics.countError(ex);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "save_failed"));
         }
     }
+
+    // multipart parsing is lazy, so the container's size limit surfaces here rather than
+    // before the handler is known
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, String>> uploadTooLarge() {
+        return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(Map.of("error", "file_too_large"));
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.qrcodegenerator.controller;
+
+import tools.jackson.databind.JsonNode;
+
+/**
+ * The rendering options any {@code POST /api/qr} body may carry, whatever its type. They
+ * are read straight off the body's tree, which is bound to its payload type separately.
+ */
+record QrOptions(int size, String theme, String fgColor, String bgColor, String ecc, String format) {
+
+    static QrOptions of(JsonNode body) {
+        if (!body.isObject())
+            throw new IllegalArgumentException("expected a JSON object");
+        JsonNode size = body.get("size");
+        if (size != null && !size.isNull() && !size.canConvertToInt())
+            throw new IllegalArgumentException("size must be an integer");
+        return new QrOptions(size != null && !size.isNull() ? size.intValue() : 300, string(body, "theme"),
+                string(body, "fgColor"), string(body, "bgColor"), string(body, "ecc"), string(body, "format"));
+    }
+
+    private static String string(JsonNode body, String name) {
+        JsonNode value = body.get(name);
+        if (value == null || value.isNull())
+            return null;
+        if (!value.isString())
+            throw new IllegalArgumentException(name + " must be a string");
+        return value.stringValue();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.service.PageStore;
+import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @Autowired
+    private QrService qrService;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private PageStore pageStore;
+
+    @GetMapping
+    public Map<String, Object> stats() {
+        return Map.of(
+                "renderCache", qrService.renderCacheStats(),
+                "moduleCache", qrService.moduleCacheStats(),
+                "renderScheduler", renderScheduler.stats(),
+                "pageStore", pageStore.stats());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.service.ByteBoundedCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Serves {@code /uploads/*}. Stored names never change content, so responses are
+ * immutable and the per-file metadata (length, modification time, type) is cached.
+ * Large files go out through Tomcat's sendfile when the connector offers it, otherwise
+ * through a channel transfer; single byte ranges are honoured. Images are already
+ * compressed, so no encoded variants are served here.
+ */
+@RestController
+public class UploadController {
+
+    // the same threshold Tomcat's DefaultServlet uses; below it a plain copy is cheaper
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern NAME = Pattern.compile("[^/\\\\]+");
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final Path dir = Paths.get(System.getProperty("user.dir"), "uploads");
+    private final ByteBoundedCache<String, FileMeta> metadata;
+
+    public UploadController(@Value("${app.static.metadata-cache.max-bytes:1048576}") long metadataCacheMaxBytes) {
+        this.metadata = new ByteBoundedCache<>(metadataCacheMaxBytes, meta -> 256 + meta.name().length() * 2);
+    }
+
+    @GetMapping("/uploads/{name}")
+    public void upload(@PathVariable("name") String name, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        FileMeta file = lookup(name);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(file.etag(), file.lastModified()))
+            return;
+        response.setContentType(file.contentType());
+
+        long start = 0;
+        long end = file.length() - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && file.length() > 0) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // multipart/byteranges is rarely used for images; several ranges get the whole file
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                start = range.getRangeStart(file.length());
+                end = range.getRangeEnd(file.length());
+                if (start >= file.length()) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.length());
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + start + "-" + end + "/" + file.length());
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length <= 0)
+            return;
+
+        if (length >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file from the kernel once this handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.path())) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position <= end)
+                position += channel.transferTo(position, end + 1 - position, target);
+        } catch (NoSuchFileException e) {
+            // deleted after the metadata was cached; the headers may already be out
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private FileMeta lookup(String name) throws IOException {
+        if (!NAME.matcher(name).matches() || name.equals("..") || name.startsWith("."))
+            return null;
+        FileMeta cached = metadata.get(name);
+        if (cached != null)
+            return cached;
+
+        // uploads from before the content-hash store kept the form-encoded original name on
+        // disk (spaces as '+'), while the path variable arrives decoded with '+' left alone
+        String encoded = URLEncoder.encode(name, StandardCharsets.UTF_8);
+        Path path = null;
+        BasicFileAttributes attributes = null;
+        for (String candidate : new String[] { name, encoded.replace("%2B", "+"), encoded }) {
+            try {
+                path = dir.resolve(candidate);
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                break;
+            } catch (NoSuchFileException | InvalidPathException e) {
+                // try the next spelling
+            }
+        }
+        if (attributes == null || !attributes.isRegularFile())
+            return null;
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        String etag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        return metadata.put(name, new FileMeta(name, path, attributes.size(), lastModified, etag, contentType));
+    }
+
+    private record FileMeta(String name, Path path, long length, long lastModified, String etag, String contentType) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.qrcodegenerator.payload;
+
+import com.example.qrcodegenerator.service.UploadStore;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@code {"type": "imageUrl", "imageUrl": "..."}}: a landing page that shows an uploaded
+ * image with a download button; the code points at the page.
+ */
+@Component
+public class ImageUrlPayload implements PayloadType<ImageUrlPayload.Request> {
+
+    private static final Template PAGE = Template.compile("""
+            <!DOCTYPE html>
+            <html>
+            <head>
+            <meta charset='utf-8'><meta name='viewport' content='width=device-width, initial-scale=1'>
+            <title>Image</title>
+            <style>
+            * { margin: 0; padding: 0; box-sizing: border-box; }
+            body { font-family: Arial, sans-serif; background: #f0f0f0; min-height: 100vh; display: flex; align-items: center; justify-content: center; }
+            .container { background: white; border-radius: 12px; padding: 20px; box-shadow: 0 10px 40px rgba(0,0,0,0.2); max-width: 90vw; }
+            img { max-width: 100%; height: auto; border-radius: 8px; display: block; }
+            .download-btn { display: block; margin-top: 20px; padding: 12px 24px; background: #667eea; color: white; text-decoration: none; border-radius: 8px; text-align: center; font-weight: 600; transition: all 0.3s ease; }
+            .download-btn:hover { background: #764ba2; transform: translateY(-2px); }
+            </style>
+            </head>
+            <body>
+            <div class='container'>
+            <img src='{{src}}'{{#srcset}} srcset='{{srcset}}' sizes='90vw'{{/srcset}} alt='QR Code Image'>
+            <a href='{{src}}' download class='download-btn'>Download Image</a>
+            </div>
+            </body>
+            </html>
+            """, Template.HTML, "src", "srcset");
+
+    private final LandingPages pages;
+    private final UploadStore uploadStore;
+
+    public ImageUrlPayload(LandingPages pages, UploadStore uploadStore) {
+        this.pages = pages;
+        this.uploadStore = uploadStore;
+    }
+
+    public record Request(String imageUrl) {
+    }
+
+    @Override
+    public String name() {
+        return "imageUrl";
+    }
+
+    @Override
+    public Class<Request> requestType() {
+        return Request.class;
+    }
+
+    @Override
+    public String content(Request request, PayloadContext context) throws IOException {
+        String imageUrl = request.imageUrl() != null ? request.imageUrl() : "";
+        // a full URL (e.g. "http://localhost:9091/uploads/file.jpg") is reduced to its path,
+        // which is then served from the public address
+        String imagePath = imageUrl;
+        if (imageUrl.contains("://")) {
+            int path = imageUrl.indexOf('/', imageUrl.indexOf("://") + 3);
+            imagePath = path >= 0 ? imageUrl.substring(path) : "";
+        }
+        String publicBaseUrl = context.publicBaseUrl();
+        byte[] html = PAGE.renderUtf8(publicBaseUrl + imagePath, srcset(publicBaseUrl, imagePath));
+        return pages.save(html, publicBaseUrl);
+    }
+
+    // Downscaled copies of stored uploads that exist by now; pages are content-addressed,
+    // so a page built once the variants exist simply gets a new id
+    private String srcset(String publicBaseUrl, String imagePath) {
+        if (!imagePath.startsWith("/uploads/"))
+            return null;
+        String name = imagePath.substring("/uploads/".length());
+        List<Integer> widths = uploadStore.variants(name);
+        if (widths.isEmpty())
+            return null;
+        StringBuilder srcset = new StringBuilder();
+        for (int i = 0; i < widths.size(); i++) {
+            if (i > 0)
+                srcset.append(", ");
+            srcset.append(publicBaseUrl).append("/uploads/").append(UploadStore.variantName(name, widths.get(i)))
+                    .append(' ').append(widths.get(i)).append('w');
+        }
+        return srcset.toString();
+    }
+}
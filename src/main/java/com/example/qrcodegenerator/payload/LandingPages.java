@@ -0,0 +1,38 @@
+package com.example.qrcodegenerator.payload;
+
+import com.example.qrcodegenerator.service.PageStore;
+import com.example.qrcodegenerator.service.RenderMetrics;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/** Stores the HTML pages that landing-page types point their codes at. */
+@Component
+public class LandingPages {
+
+    private final PageStore pageStore;
+    private final RenderScheduler scheduler;
+    private final RenderMetrics metrics;
+
+    public LandingPages(PageStore pageStore, RenderScheduler scheduler, RenderMetrics metrics) {
+        this.pageStore = pageStore;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Saves the page and returns its URL under {@code baseUrl}. Pages are content-addressed,
+     * so saving the same page again is a lookup. Batch renders call this from render
+     * threads, so any write is moved off them onto a virtual thread.
+     */
+    public String save(byte[] html, String baseUrl) throws IOException {
+        String pageId = scheduler.io(() -> {
+            long start = System.nanoTime();
+            String id = pageStore.put(html);
+            metrics.record(RenderMetrics.Stage.PAGE_WRITE, System.nanoTime() - start);
+            return id;
+        });
+        return baseUrl + "/pages/" + pageId + ".html";
+    }
+}
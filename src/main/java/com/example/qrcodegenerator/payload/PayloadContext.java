@@ -0,0 +1,8 @@
+package com.example.qrcodegenerator.payload;
+
+/**
+ * Where the request came from: {@code baseUrl} is the server as the client reached it,
+ * {@code publicBaseUrl} the configured or forwarded public address.
+ */
+public record PayloadContext(String baseUrl, String publicBaseUrl) {
+}
@@ -0,0 +1,20 @@
+package com.example.qrcodegenerator.payload;
+
+import java.io.IOException;
+
+/**
+ * One kind of {@code POST /api/qr} body, selected by its {@code type} field. Types are
+ * beans: a new one is added by declaring a component, and {@link PayloadTypes} finds it.
+ *
+ * @param <T> the body bound as a record; fields the type does not declare are ignored
+ */
+public interface PayloadType<T> {
+
+    /** The {@code type} value this handles, matched ignoring case. */
+    String name();
+
+    Class<T> requestType();
+
+    /** The text the code encodes; landing-page types store their page and return its URL. */
+    String content(T request, PayloadContext context) throws IOException;
+}
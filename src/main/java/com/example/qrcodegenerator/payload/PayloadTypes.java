@@ -0,0 +1,63 @@
+package com.example.qrcodegenerator.payload;
+
+import com.example.qrcodegenerator.service.RenderMetrics;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Every {@link PayloadType} bean, by name; each gets its own request counter in {@link RenderMetrics}. */
+@Component
+public class PayloadTypes {
+
+    /** Bodies without a type, or with one nobody handles, are plain text. */
+    public static final String DEFAULT = "text";
+
+    private final Map<String, PayloadType<?>> types = new HashMap<>();
+    private final Map<PayloadType<?>, ObjectReader> readers = new HashMap<>();
+
+    public PayloadTypes(List<PayloadType<?>> types, ObjectMapper objectMapper, RenderMetrics metrics) {
+        for (PayloadType<?> type : types) {
+            if (this.types.put(type.name().toLowerCase(Locale.ROOT), type) != null)
+                throw new IllegalStateException("more than one payload type named " + type.name());
+            readers.put(type, objectMapper.readerFor(type.requestType()));
+        }
+        if (!this.types.containsKey(DEFAULT))
+            throw new IllegalStateException("no payload type named " + DEFAULT);
+        metrics.countRequestsOf(types.stream().map(PayloadType::name).toList());
+    }
+
+    /** The body's {@code type} as sent, or {@link #DEFAULT}. */
+    public static String typeName(JsonNode body) {
+        JsonNode type = body.get("type");
+        return type != null && type.isString() ? type.stringValue() : DEFAULT;
+    }
+
+    public PayloadType<?> get(String name) {
+        PayloadType<?> type = name != null ? types.get(name.toLowerCase(Locale.ROOT)) : null;
+        return type != null ? type : types.get(DEFAULT);
+    }
+
+    /**
+     * Binds the body to its type's record and builds the content. A body that does not
+     * bind is reported as a {@link tools.jackson.core.JacksonException}.
+     */
+    public String content(JsonNode body, PayloadContext context) throws IOException {
+        return content(get(typeName(body)), body, context);
+    }
+
+    private <T> String content(PayloadType<T> type, JsonNode body, PayloadContext context) throws IOException {
+        return type.content(bind(type, body), context);
+    }
+
+    /** The body as {@code type}'s record. */
+    public <T> T bind(PayloadType<T> type, JsonNode body) {
+        return type.requestType().cast(readers.get(type).readValue(body));
+    }
+}
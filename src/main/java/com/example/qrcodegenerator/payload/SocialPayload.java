@@ -0,0 +1,98 @@
+package com.example.qrcodegenerator.payload;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * {@code {"type": "social", "payload": {"facebook": ..., "twitter": ..., "instagram": ...,
+ * "linkedin": ...}}}: a landing page with a button per link; the code points at the page.
+ * Links must be http or https URLs: the page is served from the app's own origin, where a
+ * {@code javascript:} or {@code data:} link would run when clicked.
+ */
+@Component
+public class SocialPayload implements PayloadType<SocialPayload.Request> {
+
+    private static final Template PAGE = Template.compile("""
+            <!DOCTYPE html>
+            <html>
+            <head>
+            <meta charset='utf-8'><meta name='viewport' content='width=device-width, initial-scale=1'>
+            <title>Social Links</title>
+            <style>
+            body { font-family: Arial, sans-serif; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); \
+            min-height: 100vh; display: flex; align-items: center; justify-content: center; margin: 0; }
+            .container { background: white; border-radius: 16px; padding: 40px; box-shadow: 0 20px 60px rgba(0,0,0,0.3); \
+            max-width: 400px; text-align: center; }
+            h1 { color: #333; margin-bottom: 30px; }
+            .social-links { display: flex; flex-direction: column; gap: 12px; }
+            a { padding: 14px 24px; border-radius: 8px; text-decoration: none; font-weight: 600; \
+            transition: all 0.3s ease; display: block; }
+            a:hover { transform: translateY(-2px); box-shadow: 0 10px 25px rgba(0,0,0,0.2); }
+            .facebook { background: #1877f2; color: white; }
+            .twitter { background: #000; color: white; }
+            .instagram { background: linear-gradient(45deg, #f09433 0%,#e6683c 25%,#dc2743 50%,#cc2366 75%,#bc1888 100%); color: white; }
+            .linkedin { background: #0a66c2; color: white; }
+            </style>
+            </head>
+            <body>
+            <div class='container'>
+            <h1>Follow Me</h1>
+            <div class='social-links'>
+            {{#facebook}}<a href='{{facebook}}' class='facebook' target='_blank'>Facebook</a>
+            {{/facebook}}{{#twitter}}<a href='{{twitter}}' class='twitter' target='_blank'>Twitter / X</a>
+            {{/twitter}}{{#instagram}}<a href='{{instagram}}' class='instagram' target='_blank'>Instagram</a>
+            {{/instagram}}{{#linkedin}}<a href='{{linkedin}}' class='linkedin' target='_blank'>LinkedIn</a>
+            {{/linkedin}}</div>
+            </div>
+            </body>
+            </html>
+            """, Template.HTML, "facebook", "twitter", "instagram", "linkedin");
+
+    private final LandingPages pages;
+
+    public SocialPayload(LandingPages pages) {
+        this.pages = pages;
+    }
+
+    public record Request(Links payload) {
+    }
+
+    public record Links(String facebook, String twitter, String instagram, String linkedin) {
+    }
+
+    @Override
+    public String name() {
+        return "social";
+    }
+
+    @Override
+    public Class<Request> requestType() {
+        return Request.class;
+    }
+
+    @Override
+    public String content(Request request, PayloadContext context) throws IOException {
+        Links links = request.payload() != null ? request.payload() : new Links(null, null, null, null);
+        byte[] html = PAGE.renderUtf8(link("facebook", links.facebook()), link("twitter", links.twitter()),
+                link("instagram", links.instagram()), link("linkedin", links.linkedin()));
+        return pages.save(html, context.baseUrl());
+    }
+
+    // blank links are left off the page, so they need no scheme
+    private static String link(String field, String value) {
+        if (value == null || value.isBlank())
+            return value;
+        String scheme;
+        try {
+            scheme = new URI(value).getScheme();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(field + " is not a valid URL");
+        }
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme))
+            throw new IllegalArgumentException(field + " must be an http or https URL");
+        return value;
+    }
+}
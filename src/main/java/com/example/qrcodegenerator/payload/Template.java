@@ -0,0 +1,252 @@
+package com.example.qrcodegenerator.payload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A text template compiled once, for payloads that are mostly constant text. {@code {{name}}}
+ * is replaced by a field, {@code {{&name}}} by the field as given, without escaping, and
+ * {@code {{#name}}...{{/name}}} is kept only when that field is not blank; sections do not
+ * nest. Fields are passed by position, in the order they were declared when compiling.
+ *
+ * <p>Static parts are kept as strings and, pre-encoded, as UTF-8 bytes. Rendering escapes
+ * the fields, sizes the output exactly and copies the parts into it, so the only
+ * allocations are the output and the encoded fields.
+ */
+public final class Template {
+
+    /** Escapes a field for the output format; returns the value itself when nothing needs escaping. */
+    @FunctionalInterface
+    public interface Escaper {
+        String escape(String value);
+    }
+
+    public static final Escaper HTML = Template::escapeHtml;
+    public static final Escaper VCARD = Template::escapeVCard;
+
+    private static final boolean[] HTML_SPECIAL = specials("&<>\"'");
+    private static final boolean[] VCARD_SPECIAL = specials("\\,;\n\r");
+
+    private final Escaper escaper;
+    private final int fields;
+    // per part: static text (and its UTF-8 bytes) or the field it shows and whether it is
+    // shown unescaped, and the field that must not be blank for it to be shown (-1 for none)
+    private final String[] text;
+    private final byte[][] utf8;
+    private final int[] field;
+    private final boolean[] raw;
+    private final int[] guard;
+
+    private Template(Escaper escaper, int fields, List<String> text, List<Integer> field, List<Boolean> raw,
+            List<Integer> guard) {
+        this.escaper = escaper;
+        this.fields = fields;
+        this.text = text.toArray(String[]::new);
+        this.utf8 = new byte[this.text.length][];
+        for (int i = 0; i < this.text.length; i++) {
+            if (this.text[i] != null)
+                utf8[i] = this.text[i].getBytes(StandardCharsets.UTF_8);
+        }
+        this.field = field.stream().mapToInt(Integer::intValue).toArray();
+        this.raw = new boolean[raw.size()];
+        for (int i = 0; i < this.raw.length; i++)
+            this.raw[i] = raw.get(i);
+        this.guard = guard.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compiles {@code source}. Throws {@link IllegalArgumentException} for a tag naming an
+     * undeclared field, or for sections that nest or are not closed.
+     */
+    public static Template compile(String source, Escaper escaper, String... fieldNames) {
+        List<String> names = Arrays.asList(fieldNames);
+        List<String> text = new ArrayList<>();
+        List<Integer> field = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+        List<Integer> guard = new ArrayList<>();
+        int section = -1;
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf("{{", position);
+            if (open < 0)
+                open = source.length();
+            if (open > position) {
+                text.add(source.substring(position, open));
+                field.add(-1);
+                raw.add(false);
+                guard.add(section);
+            }
+            if (open == source.length())
+                break;
+            int close = source.indexOf("}}", open);
+            if (close < 0)
+                throw new IllegalArgumentException("unclosed tag at " + open);
+            String tag = source.substring(open + 2, close).trim();
+            char kind = tag.isEmpty() ? ' ' : tag.charAt(0);
+            int index = names.indexOf(kind == '#' || kind == '/' || kind == '&' ? tag.substring(1).trim() : tag);
+            if (index < 0)
+                throw new IllegalArgumentException("unknown field in {{" + tag + "}}");
+            if (kind == '#') {
+                if (section >= 0)
+                    throw new IllegalArgumentException("sections do not nest: {{" + tag + "}}");
+                section = index;
+            } else if (kind == '/') {
+                if (section != index)
+                    throw new IllegalArgumentException("{{" + tag + "}} closes no open section");
+                section = -1;
+            } else {
+                text.add(null);
+                field.add(index);
+                raw.add(kind == '&');
+                guard.add(section);
+            }
+            position = close + 2;
+        }
+        if (section >= 0)
+            throw new IllegalArgumentException("section " + names.get(section) + " is not closed");
+        if (fieldNames.length > 64)
+            throw new IllegalArgumentException("at most 64 fields");
+        return new Template(escaper, fieldNames.length, text, field, raw, guard);
+    }
+
+    /** Renders with the fields in declaration order; null fields are empty. */
+    public String render(String... values) {
+        String[] escaped = escape(values);
+        long blanks = blanks(values);
+        int length = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (shown(i, blanks))
+                length += part(i, values, escaped).length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < text.length; i++) {
+            if (shown(i, blanks))
+                out.append(part(i, values, escaped));
+        }
+        return out.toString();
+    }
+
+    /** As {@link #render}, encoded as UTF-8. */
+    public byte[] renderUtf8(String... values) {
+        String[] escaped = escape(values);
+        long blanks = blanks(values);
+        // escaped fields at 2 * field, unescaped ones at 2 * field + 1
+        byte[][] encoded = new byte[2 * fields][];
+        int length = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (!shown(i, blanks))
+                continue;
+            if (text[i] == null && encoded[encodedIndex(i)] == null)
+                encoded[encodedIndex(i)] = part(i, values, escaped).getBytes(StandardCharsets.UTF_8);
+            length += text[i] != null ? utf8[i].length : encoded[encodedIndex(i)].length;
+        }
+        byte[] out = new byte[length];
+        int position = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (!shown(i, blanks))
+                continue;
+            byte[] part = text[i] != null ? utf8[i] : encoded[encodedIndex(i)];
+            System.arraycopy(part, 0, out, position, part.length);
+            position += part.length;
+        }
+        return out;
+    }
+
+    private String[] escape(String[] values) {
+        if (values.length != fields)
+            throw new IllegalArgumentException("expected " + fields + " fields, got " + values.length);
+        String[] escaped = new String[fields];
+        for (int i = 0; i < fields; i++)
+            escaped[i] = values[i] == null ? "" : escaper.escape(values[i]);
+        return escaped;
+    }
+
+    private String part(int part, String[] values, String[] escaped) {
+        if (text[part] != null)
+            return text[part];
+        if (!raw[part])
+            return escaped[field[part]];
+        String value = values[field[part]];
+        return value == null ? "" : value;
+    }
+
+    private int encodedIndex(int part) {
+        return 2 * field[part] + (raw[part] ? 1 : 0);
+    }
+
+    // bit i is set when field i is blank, so that sections are checked once per render
+    private static long blanks(String[] values) {
+        long blanks = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null || values[i].isBlank())
+                blanks |= 1L << i;
+        }
+        return blanks;
+    }
+
+    private boolean shown(int part, long blanks) {
+        return guard[part] < 0 || (blanks & (1L << guard[part])) == 0;
+    }
+
+    private static boolean[] specials(String chars) {
+        boolean[] table = new boolean[128];
+        for (int i = 0; i < chars.length(); i++)
+            table[chars.charAt(i)] = true;
+        return table;
+    }
+
+    // the index of the first character that needs escaping, or the length if none does
+    private static int firstSpecial(String value, boolean[] specials) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 128 && specials[c])
+                return i;
+        }
+        return value.length();
+    }
+
+    static String escapeHtml(String value) {
+        int first = firstSpecial(value, HTML_SPECIAL);
+        if (first == value.length())
+            return value;
+        StringBuilder sb = new StringBuilder(value.length() + 16).append(value, 0, first);
+        for (int i = first; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                case '\'' -> sb.append("&#39;");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // vCard 3.0 text values (RFC 2426 5.8.4): backslash, comma and semicolon are escaped,
+    // line breaks become \n
+    static String escapeVCard(String value) {
+        int first = firstSpecial(value, VCARD_SPECIAL);
+        if (first == value.length())
+            return value;
+        StringBuilder sb = new StringBuilder(value.length() + 8).append(value, 0, first);
+        for (int i = first; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case ',' -> sb.append("\\,");
+                case ';' -> sb.append("\\;");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> {
+                    if (i + 1 == value.length() || value.charAt(i + 1) != '\n')
+                        sb.append("\\n");
+                }
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.qrcodegenerator.payload;
+
+import org.springframework.stereotype.Component;
+
+/** {@code {"type": "text", "text": "..."}}: the text itself. */
+@Component
+public class TextPayload implements PayloadType<TextPayload.Request> {
+
+    public record Request(String text) {
+    }
+
+    @Override
+    public String name() {
+        return "text";
+    }
+
+    @Override
+    public Class<Request> requestType() {
+        return Request.class;
+    }
+
+    @Override
+    public String content(Request request, PayloadContext context) {
+        return request.text() != null ? request.text() : "";
+    }
+}
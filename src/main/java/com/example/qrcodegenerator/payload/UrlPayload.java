@@ -0,0 +1,26 @@
+package com.example.qrcodegenerator.payload;
+
+import org.springframework.stereotype.Component;
+
+/** {@code {"type": "url", "url": "..."}}: the URL itself. */
+@Component
+public class UrlPayload implements PayloadType<UrlPayload.Request> {
+
+    public record Request(String url) {
+    }
+
+    @Override
+    public String name() {
+        return "url";
+    }
+
+    @Override
+    public Class<Request> requestType() {
+        return Request.class;
+    }
+
+    @Override
+    public String content(Request request, PayloadContext context) {
+        return request.url() != null ? request.url() : "";
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.qrcodegenerator.payload;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code {"type": "vcard", "payload": {...}}}: a vCard 3.0; blank properties are left out.
+ * The URL is a URI value, not text, so it is not escaped, only kept on its line. The address
+ * is free text and goes in the street component of ADR, the other components left empty.
+ */
+@Component
+public class VCardPayload implements PayloadType<VCardPayload.Request> {
+
+    private static final Template VCARD = Template.compile("""
+            BEGIN:VCARD
+            VERSION:3.0
+            N:{{lastName}};{{firstName}}
+            FN:{{firstName}} {{lastName}}
+            {{#org}}ORG:{{org}}
+            {{/org}}{{#title}}TITLE:{{title}}
+            {{/title}}{{#phone}}TEL:{{phone}}
+            {{/phone}}{{#email}}EMAIL:{{email}}
+            {{/email}}{{#address}}ADR:;;{{address}};;;;
+            {{/address}}{{#url}}URL:{{&url}}
+            {{/url}}END:VCARD
+            """, Template.VCARD, "firstName", "lastName", "org", "title", "phone", "email", "address", "url");
+
+    public record Request(Contact payload) {
+    }
+
+    public record Contact(String firstName, String lastName, String org, String title, String phone,
+            String email, String url, String address) {
+    }
+
+    @Override
+    public String name() {
+        return "vcard";
+    }
+
+    @Override
+    public Class<Request> requestType() {
+        return Request.class;
+    }
+
+    @Override
+    public String content(Request request, PayloadContext context) {
+        Contact c = request.payload() != null ? request.payload()
+                : new Contact(null, null, null, null, null, null, null, null);
+        return VCARD.render(c.firstName(), c.lastName(), c.org(), c.title(), c.phone(), c.email(), c.address(),
+                withoutLineBreaks(c.url()));
+    }
+
+    private static String withoutLineBreaks(String value) {
+        return value == null ? null : value.replace("\r", "").replace("\n", "");
+    }
+}
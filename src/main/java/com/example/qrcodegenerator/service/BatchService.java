@@ -0,0 +1,155 @@
+package com.example.qrcodegenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders a stream of jobs on the render pool and writes them into a ZIP as they
+ * complete. At most {@code maxInFlight} results are held in memory at any time, and a
+ * full render queue slows the batch down rather than failing it.
+ */
+@Service
+public class BatchService {
+
+    private final RenderScheduler renderScheduler;
+    private final int maxInFlight;
+
+    public BatchService(RenderScheduler renderScheduler, @Value("${app.batch.max-in-flight:0}") int maxInFlight) {
+        this.renderScheduler = renderScheduler;
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    /**
+     * Writes {@code 000001.png}, {@code 000002.png}, ... in completion order. A job that
+     * fails produces {@code 000007.error.json} instead, and the rest of the batch goes on.
+     * If the input itself cannot be read any further, the error is recorded for the
+     * next index and the ZIP is closed with what was rendered so far.
+     */
+    public void writeZip(Iterator<? extends Callable<byte[]>> jobs, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        CompletionService<Result> completion = new ExecutorCompletionService<>(renderScheduler.executor());
+        int submitted = 0;
+        int written = 0;
+        try {
+            while (true) {
+                Callable<byte[]> job;
+                try {
+                    if (!jobs.hasNext())
+                        break;
+                    job = jobs.next();
+                } catch (RuntimeException e) {
+                    writeEntry(zip, Result.failed(submitted + 1, e));
+                    break;
+                }
+                int index = submitted + 1;
+                while (true) {
+                    try {
+                        completion.submit(() -> run(index, job));
+                        break;
+                    } catch (RenderRejectedException e) {
+                        // the shared queue is full: make room by finishing one of ours
+                        if (submitted == written) {
+                            Thread.sleep(10);
+                        } else {
+                            writeEntry(zip, completion.take().get());
+                            written++;
+                        }
+                    }
+                }
+                submitted = index;
+
+                while (submitted - written >= maxInFlight) {
+                    writeEntry(zip, completion.take().get());
+                    written++;
+                }
+                for (var done = completion.poll(); done != null; done = completion.poll()) {
+                    writeEntry(zip, done.get());
+                    written++;
+                }
+            }
+            while (written < submitted) {
+                writeEntry(zip, completion.take().get());
+                written++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch interrupted");
+        } catch (ExecutionException e) {
+            // run() never throws, so this only happens if the pool itself fails
+            throw new IOException(e.getCause());
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private static Result run(int index, Callable<byte[]> job) {
+        try {
+            return new Result(index, job.call(), null);
+        } catch (Exception e) {
+            return Result.failed(index, e);
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Result result) throws IOException {
+        String name;
+        byte[] data;
+        if (result.png() != null) {
+            name = "%06d.png".formatted(result.index());
+            data = result.png();
+        } else {
+            name = "%06d.error.json".formatted(result.index());
+            data = ("{\"index\":" + result.index() + ",\"error\":\"" + jsonEscape(result.error()) + "\"}\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        writeStored(zip, name, data);
+    }
+
+    // PNG data is already deflated, so entries are stored as-is
+    public static void writeStored(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private static String jsonEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append("\\u%04x".formatted((int) c));
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private record Result(int index, byte[] png, String error) {
+
+        static Result failed(int index, Exception e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new Result(index, null, message);
+        }
+    }
+}
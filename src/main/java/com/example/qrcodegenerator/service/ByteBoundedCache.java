@@ -0,0 +1,106 @@
+package com.example.qrcodegenerator.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Concurrent cache bounded by the total weight (in bytes) of its values rather
+ * than by entry count. Eviction is second-chance FIFO, so reads never take a lock.
+ */
+public class ByteBoundedCache<K, V> {
+
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node<K, V>> queue = new ConcurrentLinkedQueue<>();
+    private final ToIntFunction<V> weigher;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ByteBoundedCache(long maxBytes, ToIntFunction<V> weigher) {
+        this.maxBytes = Math.max(0, maxBytes);
+        // a single value may not take more than an eighth of the budget, otherwise
+        // one huge render would flush every hot entry
+        this.maxEntryBytes = this.maxBytes / 8;
+        this.weigher = weigher;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        node.referenced = true;
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Stores the value unless it is too large to admit. If another thread cached
+     * the same key first, that value is kept and returned.
+     */
+    public V put(K key, V value) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxEntryBytes)
+            return value;
+
+        Node<K, V> node = new Node<>(key, value, weight);
+        Node<K, V> existing = map.putIfAbsent(key, node);
+        if (existing != null)
+            return existing.value;
+
+        queue.offer(node);
+        if (totalBytes.addAndGet(weight) > maxBytes)
+            evict();
+        return value;
+    }
+
+    /** Values weighing more than this are never cached. */
+    public int maxEntryWeight() {
+        return (int) Math.min(maxEntryBytes, Integer.MAX_VALUE - 8);
+    }
+
+    public Stats stats() {
+        return new Stats(map.size(), totalBytes.get(), maxBytes, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void evict() {
+        while (totalBytes.get() > maxBytes) {
+            Node<K, V> node = queue.poll();
+            if (node == null)
+                return;
+            if (node.referenced && map.get(node.key) == node) {
+                node.referenced = false;
+                queue.offer(node);
+                continue;
+            }
+            if (map.remove(node.key, node)) {
+                totalBytes.addAndGet(-node.weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    public record Stats(int entries, long bytes, long maxBytes, long hits, long misses, long evictions) {
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        volatile boolean referenced;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
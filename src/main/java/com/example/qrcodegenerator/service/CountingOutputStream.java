@@ -0,0 +1,32 @@
+package com.example.qrcodegenerator.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Passes writes through and counts the bytes. */
+class CountingOutputStream extends FilterOutputStream {
+
+    private long size;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        size += len;
+    }
+
+    /** The number of bytes passed through. */
+    long size() {
+        return size;
+    }
+}
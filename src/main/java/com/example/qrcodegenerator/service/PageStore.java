@@ -0,0 +1,406 @@
+package com.example.qrcodegenerator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Content-addressed store for generated landing pages. A page's id is the first 128 bits
+ * of the SHA-256 of its HTML, so storing the same page twice is a lookup, not a write.
+ * Pages are appended to a few large pack files instead of one file each; the offset index
+ * lives in memory and is rebuilt by scanning the packs on startup.
+ *
+ * <p>Record layout: magic, id (16 bytes), creation time (millis), length, HTML, CRC32 of
+ * everything after the magic. A torn record at the end of the last pack is cut off on
+ * startup.
+ *
+ * <p>A page's id ends up printed in a QR code, so {@link #put} returns only once the record
+ * has been forced to disk. Puts that arrive while a force is running share the next one,
+ * and a pack is forced before the next one is started, so only the active pack is ever
+ * forced on the put path.
+ *
+ * <p>With a retention period set, pages not stored again within it are dropped from the
+ * index, and sealed packs that are mostly dead are compacted by copying their live pages
+ * forward. Without one (the default) pages live forever, since printed codes point at them.
+ */
+@Component
+public class PageStore implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PageStore.class);
+
+    private static final int MAGIC = 0x51525047; // "QRPG"
+    private static final int ID_BYTES = 16;
+    private static final int HEADER = 4 + ID_BYTES + 8 + 4;
+    private static final int TRAILER = 4;
+    static final int MAX_PAGE_BYTES = 1 << 20;
+    private static final Pattern PACK_NAME = Pattern.compile("pack-(\\d{6})\\.dat");
+
+    private final Path packDir;
+    private final long packSize;
+    private final long retentionMillis;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> packs = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile int activePack;
+    private long activeSize;
+    // records appended so far, and how many of them are known to be on disk
+    private volatile long appended;
+    private final Object syncLock = new Object();
+    private long synced;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    public PageStore(@Value("${app.pages.dir:}") String dir,
+            @Value("${app.pages.pack-size:64MB}") DataSize packSize,
+            @Value("${app.pages.retention:0s}") Duration retention) {
+        Path pagesDir = StringUtils.hasText(dir) ? Paths.get(dir) : Paths.get(System.getProperty("user.dir"), "pages");
+        this.packDir = pagesDir.resolve("packs");
+        this.packSize = packSize.toBytes();
+        this.retentionMillis = retention.toMillis();
+        try {
+            load(System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not open page store in " + packDir, e);
+        }
+    }
+
+    /** Stores the page if it is not there yet and returns its id. */
+    public String put(String html) throws IOException {
+        return put(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** As {@link #put(String)}, for a page that is already UTF-8. */
+    public String put(byte[] data) throws IOException {
+        return put(data, System.currentTimeMillis());
+    }
+
+    String put(byte[] data, long now) throws IOException {
+        if (data.length > MAX_PAGE_BYTES)
+            throw new IllegalArgumentException("page is larger than " + MAX_PAGE_BYTES + " bytes");
+        byte[] hash = hash(data);
+        String id = HexFormat.of().formatHex(hash);
+
+        if (isCurrent(index.get(id), now)) {
+            duplicates.increment();
+            return id;
+        }
+        long record;
+        synchronized (writeLock) {
+            if (isCurrent(index.get(id), now)) {
+                duplicates.increment();
+                return id;
+            }
+            index.put(id, append(hash, now, data));
+            record = appended;
+            writes.increment();
+        }
+        sync(record);
+        return id;
+    }
+
+    /** The page's HTML, or null if there is no such page. */
+    public byte[] get(String id) throws IOException {
+        // an entry can move to another pack between the lookup and the read
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Entry entry = index.get(id);
+            if (entry == null)
+                return null;
+            try {
+                return read(entry);
+            } catch (ClosedChannelException e) {
+                if (Thread.currentThread().isInterrupted())
+                    throw e;
+            }
+        }
+        throw new IOException("page " + id + " kept moving while being read");
+    }
+
+    @Scheduled(initialDelayString = "${app.pages.compaction-interval:1h}",
+            fixedDelayString = "${app.pages.compaction-interval:1h}")
+    public void compact() {
+        try {
+            compact(System.currentTimeMillis());
+        } catch (IOException e) {
+            log.warn("Page store compaction failed", e);
+        }
+    }
+
+    /**
+     * Drops expired pages from the index and rewrites sealed packs that are less than half
+     * live. Returns the number of packs removed.
+     */
+    int compact(long now) throws IOException {
+        if (retentionMillis > 0)
+            index.values().removeIf(entry -> now - entry.created() > retentionMillis);
+
+        // Only packs sealed before the live set is counted are candidates. The pack that is
+        // active now takes puts and this pass's own copies, and may be sealed before the pass
+        // reaches it, with pages in it that the counts below do not include.
+        int sealedBelow = activePack;
+        Map<Integer, Long> liveBytes = new HashMap<>();
+        Map<Integer, List<String>> livePages = new HashMap<>();
+        index.forEach((id, entry) -> {
+            liveBytes.merge(entry.pack(), (long) HEADER + entry.length() + TRAILER, Long::sum);
+            livePages.computeIfAbsent(entry.pack(), p -> new ArrayList<>()).add(id);
+        });
+
+        int removed = 0;
+        for (int pack : List.copyOf(packs.keySet())) {
+            if (pack >= sealedBelow)
+                continue;
+            long size = Files.size(packPath(pack));
+            if (liveBytes.getOrDefault(pack, 0L) * 2 >= size)
+                continue;
+
+            for (String id : livePages.getOrDefault(pack, List.of())) {
+                Entry entry = index.get(id);
+                if (entry == null || entry.pack() != pack)
+                    continue;
+                byte[] data = read(entry);
+                synchronized (writeLock) {
+                    if (index.get(id) == entry)
+                        index.put(id, append(HexFormat.of().parseHex(id), entry.created(), data));
+                }
+            }
+            synchronized (writeLock) {
+                // the copies must be on disk before the only other copy is deleted
+                channel(activePack).force(false);
+                FileChannel channel = packs.remove(pack);
+                if (channel != null)
+                    channel.close();
+                Files.delete(packPath(pack));
+            }
+            removed++;
+        }
+        if (removed > 0)
+            log.info("Page store compaction removed {} pack(s)", removed);
+        return removed;
+    }
+
+    public Stats stats() {
+        long bytes = 0;
+        for (int pack : packs.keySet()) {
+            try {
+                bytes += Files.size(packPath(pack));
+            } catch (IOException e) {
+                // removed by compaction in the meantime
+            }
+        }
+        return new Stats(index.size(), packs.size(), bytes, writes.sum(), duplicates.sum());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        synchronized (writeLock) {
+            for (FileChannel channel : packs.values())
+                channel.close();
+            packs.clear();
+        }
+    }
+
+    // a duplicate only counts as stored if it won't expire soon; otherwise it is
+    // written again so that a page that is still being handed out stays alive
+    private boolean isCurrent(Entry entry, long now) {
+        return entry != null && (retentionMillis <= 0 || now - entry.created() < retentionMillis / 2);
+    }
+
+    private Entry append(byte[] hash, long created, byte[] data) throws IOException {
+        int recordSize = HEADER + data.length + TRAILER;
+        if (activeSize > 0 && activeSize + recordSize > packSize) {
+            channel(activePack).force(false);
+            activePack++;
+            activeSize = 0;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(MAGIC).put(hash).putLong(created).putInt(data.length).put(data);
+        record.putInt(crc(record.array(), HEADER + data.length));
+        record.flip();
+
+        FileChannel channel = channel(activePack);
+        long offset = activeSize;
+        while (record.hasRemaining())
+            channel.write(record, offset + record.position());
+        activeSize += recordSize;
+        appended++;
+        return new Entry(activePack, offset + HEADER, data.length, created);
+    }
+
+    // Forces the active pack unless a force that started after record was appended already
+    // covered it. Records in earlier packs were forced when those packs were sealed.
+    private void sync(long record) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= record)
+                return;
+            long target = appended;
+            channel(activePack).force(false);
+            synced = target;
+        }
+    }
+
+    private byte[] read(Entry entry) throws IOException {
+        FileChannel channel = channel(entry.pack());
+        ByteBuffer data = ByteBuffer.allocate(entry.length());
+        while (data.hasRemaining()) {
+            if (channel.read(data, entry.offset() + data.position()) < 0)
+                throw new EOFException("pack " + entry.pack() + " ends inside a page");
+        }
+        return data.array();
+    }
+
+    // positional I/O is safe to share, but an interrupted reader closes the channel for
+    // everyone, so a closed channel is reopened on the next use. Only the active pack is
+    // ever created; any other pack missing from the map was compacted away.
+    private FileChannel channel(int pack) throws IOException {
+        FileChannel channel = packs.get(pack);
+        if (channel != null && channel.isOpen())
+            return channel;
+        synchronized (writeLock) {
+            channel = packs.get(pack);
+            if (channel != null && channel.isOpen())
+                return channel;
+            if (channel == null && pack != activePack)
+                throw new ClosedChannelException();
+            channel = FileChannel.open(packPath(pack), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            packs.put(pack, channel);
+            return channel;
+        }
+    }
+
+    private void load(long now) throws IOException {
+        Files.createDirectories(packDir);
+        List<Integer> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(packDir)) {
+            files.forEach(file -> {
+                Matcher m = PACK_NAME.matcher(file.getFileName().toString());
+                if (m.matches())
+                    existing.add(Integer.parseInt(m.group(1)));
+            });
+        }
+        existing.sort(null);
+
+        for (int pack : existing) {
+            long valid = scan(pack, now);
+            activePack = pack;
+            FileChannel channel = channel(pack);
+            if (valid < channel.size()) {
+                if (pack == existing.get(existing.size() - 1)) {
+                    log.warn("Truncating torn record at {} in {}", valid, packPath(pack));
+                    channel.truncate(valid);
+                } else {
+                    log.warn("Ignoring unreadable data after {} in {}", valid, packPath(pack));
+                }
+            }
+            activeSize = valid;
+        }
+        if (existing.isEmpty()) {
+            activePack = 1;
+            activeSize = 0;
+        }
+        channel(activePack);
+        log.info("Page store opened with {} page(s) in {} pack(s)", index.size(), packs.size());
+    }
+
+    // indexes the pack's valid records and returns the offset after the last one
+    private long scan(int pack, long now) throws IOException {
+        long offset = 0;
+        try (InputStream file = Files.newInputStream(packPath(pack));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            byte[] header = new byte[HEADER];
+            while (true) {
+                try {
+                    in.readFully(header);
+                } catch (EOFException e) {
+                    return offset;
+                }
+                ByteBuffer h = ByteBuffer.wrap(header);
+                int length = h.getInt(HEADER - 4);
+                if (h.getInt(0) != MAGIC || length < 0 || length > MAX_PAGE_BYTES)
+                    return offset;
+
+                byte[] record = new byte[HEADER + length];
+                System.arraycopy(header, 0, record, 0, HEADER);
+                int crc;
+                try {
+                    in.readFully(record, HEADER, length);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    return offset;
+                }
+                if (crc != crc(record, record.length))
+                    return offset;
+
+                long created = h.getLong(4 + ID_BYTES);
+                if (retentionMillis <= 0 || now - created <= retentionMillis) {
+                    String id = HexFormat.of().formatHex(header, 4, 4 + ID_BYTES);
+                    index.put(id, new Entry(pack, offset + HEADER, length, created));
+                }
+                offset += HEADER + length + TRAILER;
+            }
+        }
+    }
+
+    private Path packPath(int pack) {
+        return packDir.resolve("pack-%06d.dat".formatted(pack));
+    }
+
+    private static int crc(byte[] record, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, end - 4);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            byte[] id = new byte[ID_BYTES];
+            System.arraycopy(digest, 0, id, 0, ID_BYTES);
+            return id;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(int pack, long offset, int length, long created) {
+    }
+
+    public record Stats(int pages, int packs, long bytes, long writes, long duplicates) {
+    }
+}
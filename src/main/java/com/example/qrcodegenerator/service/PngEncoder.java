@@ -0,0 +1,206 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes two-color images as 1-bit indexed PNGs, one scanline at a time, without
+ * building a {@code BufferedImage}. Instances keep their Deflater and buffers between
+ * images and are not thread-safe.
+ */
+public final class PngEncoder {
+
+    /**
+     * Source of packed 1-bit scanlines. The encoder always asks
+     * {@link #repeatsPrevious(int)} for a row before (possibly) packing it.
+     */
+    public interface Scanlines {
+
+        int getWidth();
+
+        int getHeight();
+
+        boolean repeatsPrevious(int y);
+
+        /** Sets the bits of row {@code y}, MSB first, starting at {@code scanline[1]}. */
+        void pack(int y, byte[] scanline);
+    }
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PLTE = "PLTE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRNS = "tRNS".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int IDAT_SIZE = 32 * 1024;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private final byte[] idat = new byte[IDAT_SIZE];
+    private final byte[] header = new byte[13];
+    private final byte[] intBuffer = new byte[4];
+    private int idatLength;
+    private byte[] scanline = new byte[0];
+    private long packNanos;
+    private long outputNanos;
+
+    /**
+     * Palette index 1 is used for set bits ({@code onColor}), index 0 for the rest,
+     * matching {@code MatrixToImageWriter}.
+     */
+    public void write(BitMatrix matrix, int onColor, int offColor, OutputStream out) throws IOException {
+        write(new MatrixScanlines(matrix), onColor, offColor, out);
+    }
+
+    public void write(Scanlines rows, int onColor, int offColor, OutputStream out) throws IOException {
+        int width = rows.getWidth();
+        int height = rows.getHeight();
+        packNanos = 0;
+        outputNanos = 0;
+
+        out.write(SIGNATURE);
+        writeHeader(width, height, out);
+        writePalette(onColor, offColor, out);
+
+        int scanlineLength = 1 + (width + 7) / 8;
+        if (scanline.length < scanlineLength)
+            scanline = new byte[scanlineLength];
+
+        deflater.reset();
+        idatLength = 0;
+        for (int y = 0; y < height; y++) {
+            // modules are scaled up, so most scanlines repeat the one before them
+            if (!rows.repeatsPrevious(y)) {
+                // byte 0 is the filter type; 0 (None) suits two-color data best
+                long start = System.nanoTime();
+                Arrays.fill(scanline, 0, scanlineLength, (byte) 0);
+                rows.pack(y, scanline);
+                packNanos += System.nanoTime() - start;
+            }
+            deflater.setInput(scanline, 0, scanlineLength);
+            while (!deflater.needsInput())
+                deflate(out);
+        }
+        deflater.finish();
+        while (!deflater.finished())
+            deflate(out);
+        if (idatLength > 0)
+            writeChunk(IDAT, idat, idatLength, out);
+
+        writeChunk(IEND, idat, 0, out);
+    }
+
+    /**
+     * Time the last {@code write} spent packing rows. Only distinct rows are packed, so
+     * this is timed a few hundred times per image at most.
+     */
+    public long packNanos() {
+        return packNanos;
+    }
+
+    /** Time the last {@code write} spent handing chunks to the output stream. */
+    public long outputNanos() {
+        return outputNanos;
+    }
+
+    private void deflate(OutputStream out) throws IOException {
+        idatLength += deflater.deflate(idat, idatLength, IDAT_SIZE - idatLength);
+        if (idatLength == IDAT_SIZE) {
+            writeChunk(IDAT, idat, idatLength, out);
+            idatLength = 0;
+        }
+    }
+
+    private void writeHeader(int width, int height, OutputStream out) throws IOException {
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 1; // bit depth
+        header[9] = 3; // indexed color
+        header[10] = 0; // deflate
+        header[11] = 0; // adaptive filtering
+        header[12] = 0; // no interlace
+        writeChunk(IHDR, header, 13, out);
+    }
+
+    private void writePalette(int onColor, int offColor, OutputStream out) throws IOException {
+        byte[] palette = {
+                (byte) (offColor >> 16), (byte) (offColor >> 8), (byte) offColor,
+                (byte) (onColor >> 16), (byte) (onColor >> 8), (byte) onColor };
+        writeChunk(PLTE, palette, palette.length, out);
+
+        int offAlpha = offColor >>> 24;
+        int onAlpha = onColor >>> 24;
+        if (offAlpha != 0xFF || onAlpha != 0xFF)
+            writeChunk(TRNS, new byte[] { (byte) offAlpha, (byte) onAlpha }, 2, out);
+    }
+
+    private void writeChunk(byte[] type, byte[] data, int length, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        putInt(intBuffer, 0, length);
+        out.write(intBuffer);
+        out.write(type);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        putInt(intBuffer, 0, (int) crc.getValue());
+        out.write(intBuffer);
+        outputNanos += System.nanoTime() - start;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static final class MatrixScanlines implements Scanlines {
+
+        private final BitMatrix matrix;
+        private BitArray previous;
+        private BitArray current;
+
+        MatrixScanlines(BitMatrix matrix) {
+            this.matrix = matrix;
+            this.previous = new BitArray(matrix.getWidth());
+            this.current = new BitArray(matrix.getWidth());
+        }
+
+        @Override
+        public int getWidth() {
+            return matrix.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return matrix.getHeight();
+        }
+
+        @Override
+        public boolean repeatsPrevious(int y) {
+            current = matrix.getRow(y, current);
+            boolean same = y > 0 && current.equals(previous);
+            BitArray swap = previous;
+            previous = current;
+            current = swap;
+            return same;
+        }
+
+        @Override
+        public void pack(int y, byte[] scanline) {
+            int width = previous.getSize();
+            for (int x = previous.getNextSet(0); x < width; x = previous.getNextSet(x + 1))
+                scanline[1 + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+        }
+    }
+}
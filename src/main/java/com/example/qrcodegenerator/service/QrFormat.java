@@ -0,0 +1,30 @@
+package com.example.qrcodegenerator.service;
+
+import org.springframework.http.MediaType;
+
+public enum QrFormat {
+
+    PNG(MediaType.IMAGE_PNG),
+    SVG(MediaType.parseMediaType("image/svg+xml"));
+
+    private final MediaType mediaType;
+
+    QrFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /** Blank means PNG; anything other than png/svg is rejected. */
+    public static QrFormat parse(String format) {
+        if (format == null || format.isBlank())
+            return PNG;
+        return switch (format.trim().toLowerCase()) {
+            case "png" -> PNG;
+            case "svg" -> SVG;
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+}
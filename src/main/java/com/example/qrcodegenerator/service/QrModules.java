@@ -0,0 +1,16 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * The logical module grid of an encoded symbol, one bit per module and without
+ * quiet zone. Independent of output size and colors, so one encode serves them all.
+ */
+public record QrModules(BitMatrix modules, int version, ErrorCorrectionLevel ecc) {
+
+    public int weight() {
+        // BitMatrix stores rows as 32-bit words
+        return modules.getHeight() * ((modules.getWidth() + 31) / 32) * 4 + 64;
+    }
+}
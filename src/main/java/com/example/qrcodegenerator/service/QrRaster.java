@@ -0,0 +1,94 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * A module grid scaled to pixel size with a quiet zone, computed on demand rather
+ * than materialized. Geometry matches {@code QRCodeWriter}: the largest whole-pixel
+ * module size that fits, centered, with at least four quiet modules on each side.
+ */
+public final class QrRaster implements PngEncoder.Scanlines {
+
+    static final int QUIET_ZONE = 4;
+
+    private final BitMatrix modules;
+    private final int width;
+    private final int height;
+    private final int multiple;
+    private final int left;
+    private final int top;
+
+    public QrRaster(BitMatrix modules, int width, int height) {
+        this.modules = modules;
+        int qrWidth = modules.getWidth() + QUIET_ZONE * 2;
+        int qrHeight = modules.getHeight() + QUIET_ZONE * 2;
+        this.width = Math.max(width, qrWidth);
+        this.height = Math.max(height, qrHeight);
+        this.multiple = Math.min(this.width / qrWidth, this.height / qrHeight);
+        this.left = (this.width - modules.getWidth() * multiple) / 2;
+        this.top = (this.height - modules.getHeight() * multiple) / 2;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public BitMatrix getModules() {
+        return modules;
+    }
+
+    public int getMultiple() {
+        return multiple;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    @Override
+    public boolean repeatsPrevious(int y) {
+        return y > 0 && moduleRow(y) == moduleRow(y - 1);
+    }
+
+    @Override
+    public void pack(int y, byte[] scanline) {
+        int row = moduleRow(y);
+        if (row < 0)
+            return;
+        for (int mx = modules.getWidth() - 1; mx >= 0; mx--) {
+            if (!modules.get(mx, row))
+                continue;
+            int end = left + (mx + 1) * multiple;
+            for (int x = left + mx * multiple; x < end; x++)
+                scanline[1 + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+        }
+    }
+
+    public BitMatrix toBitMatrix() {
+        BitMatrix output = new BitMatrix(width, height);
+        for (int my = 0; my < modules.getHeight(); my++) {
+            for (int mx = 0; mx < modules.getWidth(); mx++) {
+                if (modules.get(mx, my))
+                    output.setRegion(left + mx * multiple, top + my * multiple, multiple, multiple);
+            }
+        }
+        return output;
+    }
+
+    private int moduleRow(int y) {
+        if (y < top)
+            return -1;
+        int row = (y - top) / multiple;
+        return row < modules.getHeight() ? row : -1;
+    }
+}
@@ -1,54 +1,325 @@
 package com.example.qrcodegenerator.service;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageConfig;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.EnumMap;
+import java.util.HexFormat;
 import java.util.Map;
 
 @Service
 public class QrService {
 
-    public byte[] generatePng(String text, int size) throws WriterException, IOException {
-        if (size <= 0)
-            size = 300;
+    private static final int DEFAULT_ON_COLOR = 0xFF000000;
+    private static final int DEFAULT_OFF_COLOR = 0xFFFFFFFF;
+    private static final String CHARSET = "UTF-8";
 
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+    private static final ThreadLocal<PngEncoder> PNG_ENCODER = ThreadLocal.withInitial(PngEncoder::new);
+    // 1-bit PNGs are tens of KB; buffers that grew past a megabyte for a huge size are not kept
+    private static final int PNG_BUFFER_BYTES = 8192;
+    private static final int MAX_RETAINED_PNG_BUFFER_BYTES = 1 << 20;
 
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, size, size, hints);
+    private final ByteBoundedCache<RenderKey, RenderedPng> renderCache;
+    private final ByteBoundedCache<ModuleKey, QrModules> moduleCache;
+    private final boolean nativePng;
+    private final RenderScheduler scheduler;
+    private final RenderMetrics metrics;
+    private final RenderBuffers pngBuffers;
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream, new MatrixToImageConfig());
-        return pngOutputStream.toByteArray();
+    public QrService(@Value("${app.render-cache.max-bytes:67108864}") long renderCacheMaxBytes,
+            @Value("${app.module-cache.max-bytes:16777216}") long moduleCacheMaxBytes,
+            @Value("${app.png-encoder:native}") String pngEncoder,
+            RenderScheduler scheduler, RenderMetrics metrics) {
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.renderCache = new ByteBoundedCache<>(renderCacheMaxBytes,
+                png -> weight(png.bytes().length, png.etag()));
+        this.moduleCache = new ByteBoundedCache<>(moduleCacheMaxBytes, QrModules::weight);
+        this.nativePng = !"zxing".equalsIgnoreCase(pngEncoder);
+        // a buffer is held from encoding until its caller has written it, so allow a few per thread
+        this.pngBuffers = new RenderBuffers(PNG_BUFFER_BYTES, scheduler.stats().threads() * 4,
+                MAX_RETAINED_PNG_BUFFER_BYTES);
+    }
+
+    public byte[] generatePng(String text, int size) throws WriterException, IOException {
+        return render(text, size, null, null).bytes();
     }
 
     public byte[] generatePng(String text, int size, Integer onColor, Integer offColor)
             throws WriterException, IOException {
-        if (size <= 0)
-            size = 300;
+        return render(text, size, onColor, offColor).bytes();
+    }
+
+    public RenderedPng render(String text, int size, Integer onColor, Integer offColor)
+            throws WriterException, IOException {
+        Render png = prepare(text, size, onColor, offColor, QrFormat.PNG, ErrorCorrectionLevel.L);
+        if (png.cached != null)
+            return png.cached;
+        RenderBuffers.Buffer buffer = encodePng(png.key, png.modules);
+        RenderedPng rendered = new RenderedPng(buffer.toByteArray(), png.etag, png.modules.version());
+        pngBuffers.release(buffer);
+        return renderCache.put(png.key, rendered);
+    }
+
+    public Render prepare(String text, int size, Integer onColor, Integer offColor) throws WriterException {
+        return prepare(text, size, onColor, offColor, QrFormat.PNG, ErrorCorrectionLevel.L);
+    }
+
+    public Render prepare(String text, int size, Integer onColor, Integer offColor, QrFormat format)
+            throws WriterException {
+        return prepare(text, size, onColor, offColor, format, ErrorCorrectionLevel.L);
+    }
+
+    /**
+     * The entity tag {@link #prepare} would give the render, computed without encoding
+     * anything, so that a conditional request can be answered before it takes a render slot.
+     */
+    public String etag(String text, int size, Integer onColor, Integer offColor, QrFormat format,
+            ErrorCorrectionLevel ecc) {
+        return etagFor(renderKey(text, size, onColor, offColor, ecc), format);
+    }
+
+    /**
+     * Resolves a render without producing any output yet: either the cached PNG or the
+     * (cached) module grid to draw from. Encoding errors surface here, before a caller
+     * has committed a response. Only PNGs are cached; SVG cost follows the module count.
+     */
+    public Render prepare(String text, int size, Integer onColor, Integer offColor, QrFormat format,
+            ErrorCorrectionLevel ecc) throws WriterException {
+        RenderKey key = renderKey(text, size, onColor, offColor, ecc);
+        if (format == QrFormat.PNG) {
+            RenderedPng cached = renderCache.get(key);
+            if (cached != null)
+                return new Render(key, format, cached.etag(), cached, null);
+        }
+        return new Render(key, format, etagFor(key, format), null, modules(text, ecc));
+    }
+
+    private static RenderKey renderKey(String text, int size, Integer onColor, Integer offColor,
+            ErrorCorrectionLevel ecc) {
+        return new RenderKey(text, size > 0 ? size : 300, onColor != null ? onColor : DEFAULT_ON_COLOR,
+                offColor != null ? offColor : DEFAULT_OFF_COLOR, ecc);
+    }
+
+    /** Parses {@code #RRGGBB} or {@code #AARRGGBB} into ARGB; null when absent or malformed. */
+    public static Integer parseColor(String hex) {
+        if (hex == null)
+            return null;
+        String h = hex.trim();
+        if (h.isEmpty())
+            return null;
+        if (h.startsWith("#"))
+            h = h.substring(1);
+        if (h.length() == 6)
+            h = "FF" + h;
+        if (h.length() != 8)
+            return null;
+        try {
+            long val = Long.parseLong(h, 16);
+            return (int) val;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public ByteBoundedCache.Stats renderCacheStats() {
+        return renderCache.stats();
+    }
+
+    public ByteBoundedCache.Stats moduleCacheStats() {
+        return moduleCache.stats();
+    }
+
+    public QrModules modules(String text) throws WriterException {
+        return modules(text, ErrorCorrectionLevel.L);
+    }
+
+    /**
+     * Encodes the content once per content and error correction level; Reed-Solomon and
+     * mask selection are not repeated for other sizes or colors. Cache misses are encoded
+     * on the render pool.
+     */
+    public QrModules modules(String text, ErrorCorrectionLevel ecc) throws WriterException {
+        if (text == null || text.isEmpty())
+            throw new IllegalArgumentException("Found empty contents");
+
+        ModuleKey key = new ModuleKey(text, ecc);
+        QrModules cached = moduleCache.get(key);
+        if (cached != null)
+            return cached;
+        return moduleCache.put(key, scheduler.call(() -> encode(text, ecc)));
+    }
+
+    private QrModules encode(String text, ErrorCorrectionLevel ecc) throws WriterException {
+        long start = System.nanoTime();
+        QRCode code = Encoder.encode(text, ecc, hints(text));
+
+        ByteMatrix matrix = code.getMatrix();
+        BitMatrix bits = new BitMatrix(matrix.getWidth(), matrix.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (matrix.get(x, y) == 1)
+                    bits.set(x, y);
+            }
+        }
+        metrics.record(RenderMetrics.Stage.ENCODE, System.nanoTime() - start);
+        return new QrModules(bits, code.getVersion().getVersionNumber(), ecc);
+    }
 
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
+    /**
+     * Lets the encoder split the content into numeric, alphanumeric, byte and Kanji
+     * segments, whichever gives the smallest version: URLs and vCards mix long digit and
+     * upper-case runs with lower-case text. Plain ASCII needs no ECI header; anything else
+     * is declared UTF-8 rather than left to the encoder's charset choice, because many
+     * scanners ignore ECI and guess UTF-8.
+     */
+    static Map<EncodeHintType, Object> hints(String text) {
         Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.QR_COMPACT, Boolean.TRUE.toString());
+        if (!StandardCharsets.US_ASCII.newEncoder().canEncode(text))
+            hints.put(EncodeHintType.CHARACTER_SET, CHARSET);
+        return hints;
+    }
+
+    // Encoded into a pooled buffer on the render pool; writing it to the client is left to the
+    // caller so that a slow connection never holds a render thread. The buffer is only released
+    // by a caller that got it back: after a rejection or interrupt the task may still be filling it.
+    private RenderBuffers.Buffer encodePng(RenderKey key, QrModules modules) throws IOException {
+        RenderBuffers.Buffer buffer = pngBuffers.acquire();
+        scheduler.call(() -> {
+            writePng(key, modules, buffer);
+            return null;
+        });
+        metrics.recordOutput(QrFormat.PNG, buffer.size());
+        return buffer;
+    }
+
+    private static int weight(int pngBytes, String etag) {
+        return pngBytes + etag.length() * 2 + 64;
+    }
+
+    private void writePng(RenderKey key, QrModules modules, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        QrRaster raster = new QrRaster(modules.modules(), key.size(), key.size());
+        if (nativePng) {
+            PngEncoder encoder = PNG_ENCODER.get();
+            encoder.write(raster, key.onColor(), key.offColor(), out);
+            long total = System.nanoTime() - start;
+            metrics.record(RenderMetrics.Stage.RASTER, encoder.packNanos());
+            metrics.record(RenderMetrics.Stage.OUTPUT, encoder.outputNanos());
+            metrics.record(RenderMetrics.Stage.COMPRESS,
+                    Math.max(0, total - encoder.packNanos() - encoder.outputNanos()));
+        } else {
+            MatrixToImageWriter.writeToStream(raster.toBitMatrix(), "PNG", out,
+                    new MatrixToImageConfig(key.onColor(), key.offColor()));
+            metrics.record(RenderMetrics.Stage.RASTER, System.nanoTime() - start);
+        }
+    }
+
+    // Output is deterministic for a key and writer, so the tag is known before rendering;
+    // bump the prefix whenever the bytes a key produces change
+    private String etagFor(RenderKey key, QrFormat format) {
+        String writer = format == QrFormat.SVG ? "svg2|" : nativePng ? "png2|native|" : "png2|zxing|";
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(writer.getBytes(StandardCharsets.US_ASCII));
+            digest.update((key.ecc() + "|" + key.size() + "|" + key.onColor() + "|" + key.offColor() + "|")
+                    .getBytes(StandardCharsets.US_ASCII));
+            byte[] hash = digest.digest(key.text().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A prepared render that can be streamed. Cached PNGs know their length up front. A PNG
+     * that is not cached is encoded into a pooled buffer on the render pool and written from
+     * it by the calling thread; only PNGs small enough for the cache are copied into it. SVGs
+     * are written straight to the target.
+     */
+    public final class Render {
+
+        private final RenderKey key;
+        private final QrFormat format;
+        private final String etag;
+        private final RenderedPng cached;
+        private final QrModules modules;
+
+        private Render(RenderKey key, QrFormat format, String etag, RenderedPng cached, QrModules modules) {
+            this.key = key;
+            this.format = format;
+            this.etag = etag;
+            this.cached = cached;
+            this.modules = modules;
+        }
+
+        public QrFormat format() {
+            return format;
+        }
 
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, size, size, hints);
+        public String etag() {
+            return etag;
+        }
 
-        int on = onColor != null ? onColor : 0xFF000000;
-        int off = offColor != null ? offColor : 0xFFFFFFFF;
+        /** The symbol version, 1 to 40. */
+        public int version() {
+            return cached != null ? cached.version() : modules.version();
+        }
+
+        public ErrorCorrectionLevel ecc() {
+            return key.ecc();
+        }
+
+        /** The size in bytes, or -1 when it is only known after writing. */
+        public long contentLength() {
+            return cached != null ? cached.bytes().length : -1;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            if (cached != null) {
+                out.write(cached.bytes());
+                return;
+            }
+            if (format == QrFormat.SVG) {
+                long start = System.nanoTime();
+                CountingOutputStream counter = new CountingOutputStream(out);
+                SvgWriter.write(new QrRaster(modules.modules(), key.size(), key.size()), key.onColor(),
+                        key.offColor(), counter);
+                metrics.record(RenderMetrics.Stage.RASTER, System.nanoTime() - start);
+                metrics.recordOutput(QrFormat.SVG, counter.size());
+                return;
+            }
+            RenderBuffers.Buffer buffer = encodePng(key, modules);
+            try {
+                buffer.writeTo(out);
+                if (weight(buffer.size(), etag) <= renderCache.maxEntryWeight())
+                    renderCache.put(key, new RenderedPng(buffer.toByteArray(), etag, modules.version()));
+            } finally {
+                pngBuffers.release(buffer);
+            }
+        }
+    }
+
+    private record ModuleKey(String text, ErrorCorrectionLevel ecc) {
+    }
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream, new MatrixToImageConfig(on, off));
-        return pngOutputStream.toByteArray();
+    // Colors are already resolved here, so a theme and the equivalent hex pair share an entry
+    private record RenderKey(String text, int size, int onColor, int offColor, ErrorCorrectionLevel ecc) {
     }
 }
@@ -0,0 +1,58 @@
+package com.example.qrcodegenerator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output buffers that a render fills on the render pool and its caller then writes to the
+ * client, so that the bytes are neither copied out of the buffer nor written by a render
+ * thread. Up to {@code maxFree} buffers are kept for reuse; buffers that grew past
+ * {@code maxRetainedBytes} are left to the garbage collector instead.
+ */
+final class RenderBuffers {
+
+    /** A buffer whose contents are written with {@link #writeTo}, without copying them. */
+    static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer(int size) {
+            super(size);
+        }
+
+        synchronized int capacity() {
+            return buf.length;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Buffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final int initialBytes;
+    private final int maxFree;
+    private final int maxRetainedBytes;
+
+    RenderBuffers(int initialBytes, int maxFree, int maxRetainedBytes) {
+        this.initialBytes = initialBytes;
+        this.maxFree = maxFree;
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    Buffer acquire() {
+        Buffer buffer = free.poll();
+        if (buffer == null)
+            return new Buffer(initialBytes);
+        freeCount.decrementAndGet();
+        return buffer;
+    }
+
+    /** Returns a buffer for reuse; only once nothing else can still be writing to it. */
+    void release(Buffer buffer) {
+        if (buffer.capacity() > maxRetainedBytes)
+            return;
+        if (freeCount.incrementAndGet() > maxFree) {
+            freeCount.decrementAndGet();
+            return;
+        }
+        buffer.reset();
+        free.offer(buffer);
+    }
+}
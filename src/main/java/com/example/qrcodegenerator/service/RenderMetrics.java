@@ -0,0 +1,116 @@
+package com.example.qrcodegenerator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage timers, output size distributions and request counts. All meters are
+ * registered up front, so recording is a map lookup and an atomic update; the tag sets
+ * are fixed, so nothing a client sends can create new series. The request counters for
+ * payload types are registered by {@link com.example.qrcodegenerator.payload.PayloadTypes},
+ * one per type bean, when it is created.
+ *
+ * <ul>
+ * <li>{@code qr.stage} (timer, tag {@code stage}): encode, raster, compress, output,
+ * page_write, upload_write. For native PNGs, raster is row packing, output is handing
+ * chunks to the stream being encoded into (a buffer on the render pool, for misses
+ * served to a client) and compress is the rest. SVG and the ZXing PNG writer cannot be split and count as raster.</li>
+ * <li>{@code qr.output.size} (summary in bytes, tag {@code format}).</li>
+ * <li>{@code qr.requests} (counter, tag {@code type}): one per payload type, sheet,
+ * and other for a type nobody handles.</li>
+ * <li>{@code qr.errors} (counter, tag {@code exception}): failures that became a 500.
+ * These are rare, so this one is looked up when it is needed.</li>
+ * </ul>
+ */
+@Component
+public class RenderMetrics {
+
+    public enum Stage {
+        ENCODE, RASTER, COMPRESS, OUTPUT, PAGE_WRITE, UPLOAD_WRITE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    // requests counted by the controller that are not for a payload type
+    private static final List<String> KINDS = List.of("sheet");
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<QrFormat, DistributionSummary> outputSizes = new EnumMap<>(QrFormat.class);
+    private volatile Map<String, Counter> requests;
+    private final Counter otherRequests;
+    private final MeterRegistry registry;
+
+    public RenderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values())
+            stages.put(stage, Timer.builder("qr.stage")
+                    .description("Time spent per QR generation stage")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+        for (QrFormat format : QrFormat.values())
+            outputSizes.put(format, DistributionSummary.builder("qr.output.size")
+                    .description("Size of rendered QR images")
+                    .baseUnit("bytes")
+                    .tag("format", format.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(64.0)
+                    .maximumExpectedValue(64.0 * 1024 * 1024)
+                    .register(registry));
+
+        this.requests = Map.of();
+        countRequestsOf(KINDS);
+        this.otherRequests = counter(registry, "other");
+    }
+
+    /** Registers a request counter for each of {@code types}, which are counted as other until then. */
+    public synchronized void countRequestsOf(Collection<String> types) {
+        Map<String, Counter> byType = new HashMap<>(requests);
+        for (String type : types)
+            byType.putIfAbsent(type.toLowerCase(Locale.ROOT), counter(registry, type));
+        this.requests = Map.copyOf(byType);
+    }
+
+    public void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordOutput(QrFormat format, long bytes) {
+        outputSizes.get(format).record(bytes);
+    }
+
+    /** Counts a request by payload type; types are matched case-insensitively, as the controller does. */
+    public void countRequest(String type) {
+        Counter counter = type != null ? requests.get(type.toLowerCase(Locale.ROOT)) : null;
+        (counter != null ? counter : otherRequests).increment();
+    }
+
+    public void countError(Throwable e) {
+        Counter.builder("qr.errors")
+                .description("QR requests that failed with a server error")
+                .tag("exception", e.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    private static Counter counter(MeterRegistry registry, String type) {
+        return Counter.builder("qr.requests")
+                .description("QR generation requests by payload type")
+                .tag("type", type)
+                .register(registry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.qrcodegenerator.service;
+
+/**
+ * Thrown when the render pool is saturated or a request's deadline passed before its work
+ * could run. Maps to 503 with a Retry-After hint.
+ */
+public class RenderRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RenderRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.qrcodegenerator.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs CPU-bound encode and raster work on a core-sized pool with a bounded queue, and
+ * blocking I/O on virtual threads. When the queue is full, or a task could not start
+ * before its deadline, callers get a {@link RenderRejectedException} instead of waiting.
+ * Render tasks produce bytes; writing them to a client stays on the caller's thread.
+ */
+@Component
+public class RenderScheduler implements DisposableBean {
+
+    @FunctionalInterface
+    public interface RenderTask<T, X extends Exception> {
+        T call() throws X;
+    }
+
+    @FunctionalInterface
+    public interface IoTask<T> {
+        T call() throws IOException;
+    }
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int ABANDONED = 2;
+
+    private static final ThreadLocal<Boolean> ON_RENDER_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final ThreadPoolExecutor cpu;
+    private final ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+    private final int queueLimit;
+    private final long deadlineNanos;
+    private final long retryAfterSeconds;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public RenderScheduler(@Value("${app.render.threads:0}") int threads,
+            @Value("${app.render.queue-limit:0}") int queueLimit,
+            @Value("${app.render.deadline:10s}") Duration deadline,
+            @Value("${app.render.retry-after:1s}") Duration retryAfter) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueLimit = queueLimit > 0 ? queueLimit : poolSize * 32;
+        this.deadlineNanos = deadline.toNanos();
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+
+        var factory = Thread.ofPlatform().name("qr-render-", 0).daemon(true).factory();
+        this.cpu = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueLimit),
+                r -> factory.newThread(() -> {
+                    ON_RENDER_THREAD.set(true);
+                    r.run();
+                }),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the task on the render pool and waits for it. The deadline covers the time spent
+     * queued: work that has not started when it passes is cancelled, while work that has
+     * started is waited for. Called from a render thread, the task runs inline.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, X extends Exception> T call(RenderTask<T, X> task) throws X {
+        if (ON_RENDER_THREAD.get())
+            return task.call();
+
+        long submitted = System.nanoTime();
+        long deadline = submitted + deadlineNanos;
+        // QUEUED until the task starts or the caller gives up on it, whichever happens first
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        FutureTask<T> future = new FutureTask<>(() -> {
+            long started = System.nanoTime();
+            recordWait(started - submitted);
+            if (started - deadline > 0 || !state.compareAndSet(QUEUED, STARTED))
+                throw new RenderRejectedException("render deadline passed while queued", retryAfterSeconds);
+            T result = task.call();
+            completed.increment();
+            return result;
+        });
+        execute(future);
+
+        try {
+            try {
+                return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (state.compareAndSet(QUEUED, ABANDONED)) {
+                    // the caller is gone; don't leave the work behind in the queue
+                    future.cancel(false);
+                    cpu.remove(future);
+                    expired.increment();
+                    throw new RenderRejectedException("render deadline passed while queued", retryAfterSeconds);
+                }
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            if (state.compareAndSet(QUEUED, ABANDONED)) {
+                future.cancel(false);
+                cpu.remove(future);
+            }
+            Thread.currentThread().interrupt();
+            throw new RenderRejectedException("interrupted while waiting for render", retryAfterSeconds);
+        } catch (ExecutionException e) {
+            // anything checked can only be the task's own X
+            Throwable cause = e.getCause();
+            if (cause instanceof RenderRejectedException && state.get() == QUEUED)
+                expired.increment();
+            if (cause instanceof RuntimeException re)
+                throw re;
+            if (cause instanceof Error err)
+                throw err;
+            throw (X) cause;
+        }
+    }
+
+    /**
+     * Runs blocking I/O (file writes, uploads) on a virtual thread. Callers that already are
+     * virtual threads, such as request handlers, run it inline.
+     */
+    public <T> T io(IoTask<T> task) throws IOException {
+        if (Thread.currentThread().isVirtual())
+            return task.call();
+        try {
+            return io.submit(task::call).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for I/O", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe)
+                throw ioe;
+            if (cause instanceof RuntimeException re)
+                throw re;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Submission without a deadline (batch work), still subject to the queue limit. */
+    public Executor executor() {
+        return task -> {
+            long submitted = System.nanoTime();
+            execute(() -> {
+                recordWait(System.nanoTime() - submitted);
+                task.run();
+                completed.increment();
+            });
+        };
+    }
+
+    public Stats stats() {
+        long started = waits.sum();
+        return new Stats(cpu.getMaximumPoolSize(), cpu.getActiveCount(), cpu.getQueue().size(), queueLimit,
+                completed.sum(), rejected.sum(), expired.sum(),
+                started > 0 ? waitNanos.sum() / (double) started / 1_000_000.0 : 0,
+                maxWaitNanos.get() / 1_000_000.0);
+    }
+
+    @Override
+    public void destroy() {
+        cpu.shutdown();
+        io.shutdown();
+    }
+
+    private void execute(Runnable task) {
+        try {
+            cpu.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RenderRejectedException("render queue is full", retryAfterSeconds);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waits.increment();
+        waitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public record Stats(int threads, int active, int queueDepth, int queueLimit, long completed, long rejected,
+            long expired, double avgWaitMillis, double maxWaitMillis) {
+    }
+}
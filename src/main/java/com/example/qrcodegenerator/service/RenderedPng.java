@@ -0,0 +1,8 @@
+package com.example.qrcodegenerator.service;
+
+/**
+ * A rendered PNG together with its strong entity tag (a digest of the render key) and
+ * the version of the symbol it shows.
+ */
+public record RenderedPng(byte[] bytes, String etag, int version) {
+}
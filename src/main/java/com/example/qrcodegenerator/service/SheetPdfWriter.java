@@ -0,0 +1,190 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a prepared sheet as a single-page PDF. Modules are filled rectangles merged into
+ * horizontal runs, as in {@link SvgWriter}, so the codes stay sharp at any print size;
+ * captions use the standard Helvetica font, which needs no embedding. The page content
+ * is deflated as it is generated and its length is written after it, so nothing but the
+ * object offsets is kept in memory.
+ *
+ * <p>Sheet pixels are CSS pixels: 96 to the inch, 0.75 points each.
+ */
+final class SheetPdfWriter {
+
+    private static final double POINTS_PER_PIXEL = 0.75;
+
+    // Helvetica advance widths (1/1000 em) for ' ' through '~', from the standard AFM
+    private static final short[] HELVETICA = {
+            278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+            1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+            333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+            556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584 };
+
+    private SheetPdfWriter() {
+    }
+
+    static void write(SheetService.Prepared prepared, OutputStream target) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(target);
+        long[] offsets = new long[7];
+        double pageWidth = prepared.width() * POINTS_PER_PIXEL;
+        double pageHeight = prepared.height() * POINTS_PER_PIXEL;
+
+        ascii(out, "%PDF-1.4\n%âãÏÓ\n");
+        offsets[1] = object(out, 1, "<< /Type /Catalog /Pages 2 0 R >>");
+        offsets[2] = object(out, 2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        offsets[3] = object(out, 3, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + number(pageWidth) + " "
+                + number(pageHeight) + "] /Resources << /Font << /F1 5 0 R >> >> /Contents 4 0 R >>");
+
+        offsets[4] = out.size();
+        ascii(out, "4 0 obj\n<< /Length 6 0 R /Filter /FlateDecode >>\nstream\n");
+        long streamStart = out.size();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 8192);
+        // Latin-1 so that caption bytes pass through as WinAnsi
+        Writer content = new BufferedWriter(new OutputStreamWriter(deflated, StandardCharsets.ISO_8859_1), 8192);
+        writeContent(prepared, content);
+        content.flush();
+        deflated.finish();
+        deflater.end();
+        long streamLength = out.size() - streamStart;
+        ascii(out, "\nendstream\nendobj\n");
+
+        offsets[5] = object(out, 5, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica "
+                + "/Encoding /WinAnsiEncoding >>");
+        offsets[6] = object(out, 6, Long.toString(streamLength));
+
+        long xref = out.size();
+        StringBuilder table = new StringBuilder("xref\n0 7\n0000000000 65535 f \n");
+        for (int i = 1; i < offsets.length; i++)
+            table.append("%010d 00000 n \n".formatted(offsets[i]));
+        table.append("trailer\n<< /Size 7 /Root 1 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        ascii(out, table.toString());
+        out.flush();
+    }
+
+    private static void writeContent(SheetService.Prepared prepared, Writer w) throws IOException {
+        // flip to top-down pixel coordinates, so that layout matches the PNG
+        w.write("q " + number(POINTS_PER_PIXEL) + " 0 0 " + number(-POINTS_PER_PIXEL) + " 0 "
+                + number(prepared.height() * POINTS_PER_PIXEL) + " cm\n");
+        w.write(color(prepared.sheet.offColor()) + " rg 0 0 " + prepared.width() + " " + prepared.height()
+                + " re f\n");
+        w.write(color(prepared.sheet.onColor()) + " rg\n");
+
+        int tileSize = prepared.sheet.tileSize();
+        StringBuilder ops = new StringBuilder(128);
+        for (int index = 0; index < prepared.modules.size(); index++) {
+            int x0 = (index % prepared.sheet.columns()) * prepared.cellWidth + prepared.tileX;
+            int y0 = (index / prepared.sheet.columns()) * prepared.cellHeight + prepared.tileY;
+            BitMatrix modules = prepared.modules.get(index).modules();
+            // unlike the PNG, module size need not be a whole number of pixels
+            double module = (double) tileSize / (modules.getWidth() + QrRaster.QUIET_ZONE * 2);
+            double left = x0 + QrRaster.QUIET_ZONE * module;
+            double top = y0 + QrRaster.QUIET_ZONE * module;
+            for (int y = 0; y < modules.getHeight(); y++) {
+                int x = 0;
+                while (x < modules.getWidth()) {
+                    if (!modules.get(x, y)) {
+                        x++;
+                        continue;
+                    }
+                    int start = x;
+                    while (x < modules.getWidth() && modules.get(x, y))
+                        x++;
+                    ops.setLength(0);
+                    ops.append(number(left + start * module)).append(' ').append(number(top + y * module))
+                            .append(' ').append(number((x - start) * module)).append(' ').append(number(module))
+                            .append(" re\n");
+                    w.append(ops);
+                }
+            }
+            w.write("f\n");
+
+            String caption = prepared.caption(index);
+            if (caption != null && !caption.isBlank())
+                writeCaption(prepared, caption, x0, y0 + tileSize, w);
+        }
+        w.write("Q\n");
+    }
+
+    private static void writeCaption(SheetService.Prepared prepared, String caption, int x0, int y0, Writer w)
+            throws IOException {
+        int tileSize = prepared.sheet.tileSize();
+        double width = textWidth(caption) * prepared.fontSize / 1000.0;
+        double x = x0 + Math.max(0, (tileSize - width) / 2);
+        // the cap height of Helvetica is 0.718 em; center that in the caption band
+        double baseline = y0 + (prepared.captionHeight + prepared.fontSize * 0.718) / 2;
+        // clipped to the tile, and flipped back so that the text is upright
+        w.write("q " + x0 + " " + y0 + " " + tileSize + " " + prepared.captionHeight + " re W n BT /F1 "
+                + prepared.fontSize + " Tf 1 0 0 -1 " + number(x) + " " + number(baseline) + " Tm ("
+                + escape(caption) + ") Tj ET Q\n");
+    }
+
+    private static int textWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            width += c >= ' ' && c <= '~' ? HELVETICA[c - ' '] : 556;
+        }
+        return width;
+    }
+
+    // WinAnsi covers Latin-1; anything else is shown as '?'
+    private static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < ' ')
+                sb.append(' ');
+            else if (c > 0xFF)
+                sb.append('?');
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String color(int argb) {
+        return number(((argb >> 16) & 0xFF) / 255.0) + " " + number(((argb >> 8) & 0xFF) / 255.0) + " "
+                + number((argb & 0xFF) / 255.0);
+    }
+
+    // at most three decimals, no exponent and no locale
+    static String number(double value) {
+        long thousandths = Math.round(value * 1000);
+        String sign = thousandths < 0 ? "-" : "";
+        thousandths = Math.abs(thousandths);
+        long whole = thousandths / 1000;
+        long fraction = thousandths % 1000;
+        if (fraction == 0)
+            return sign + whole;
+        String digits = "%03d".formatted(fraction);
+        while (digits.endsWith("0"))
+            digits = digits.substring(0, digits.length() - 1);
+        return sign + whole + "." + digits;
+    }
+
+    private static long object(CountingOutputStream out, int number, String body) throws IOException {
+        long offset = out.size();
+        ascii(out, number + " 0 obj\n" + body + "\nendobj\n");
+        return offset;
+    }
+
+    private static void ascii(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
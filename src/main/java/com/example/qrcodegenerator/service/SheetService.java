@@ -0,0 +1,341 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lays out many codes on one print sheet, as a 1-bit PNG or a vector PDF.
+ *
+ * <p>All contents are encoded up front, in parallel on the render pool, so that bad input
+ * is reported before any output is written; module grids are small and go through the
+ * module cache. The PNG is then produced one grid row (band) at a time: the tiles of the
+ * next band are packed in parallel straight into a shared 1-bit band buffer while the
+ * current band is being compressed. Two band buffers are all the raster memory a sheet
+ * needs, however many rows it has.
+ *
+ * <p>Sheets are bounded in cells ({@code app.sheet.max-tiles}, blank ones included) and in
+ * pixels ({@code app.sheet.max-pixels}). {@link #renderPng} and {@link #renderPdf} do all of
+ * the work on the render pool, into memory, so a sheet is admitted or rejected like any
+ * other render and a slow client never holds a render thread.
+ */
+@Service
+public class SheetService {
+
+    static final int MAX_COLUMNS = 20;
+    static final int MIN_TILE_SIZE = 32;
+    static final int MAX_TILE_SIZE = 1200;
+    static final int MAX_GAP = 200;
+
+    private final QrService qrService;
+    private final RenderScheduler scheduler;
+    private final int maxTiles;
+    private final long maxPixels;
+
+    public SheetService(QrService qrService, RenderScheduler scheduler,
+            @Value("${app.sheet.max-tiles:1000}") int maxTiles,
+            @Value("${app.sheet.max-pixels:200000000}") long maxPixels) {
+        this.qrService = qrService;
+        this.scheduler = scheduler;
+        this.maxTiles = maxTiles;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * A sheet request. {@code captions} is either null or one caption per content;
+     * {@code rows} of 0 means as many as the contents need.
+     */
+    public record Sheet(List<String> contents, List<String> captions, int columns, int rows, int tileSize,
+            int gap, int onColor, int offColor, ErrorCorrectionLevel ecc) {
+    }
+
+    /** A sheet whose contents are encoded and whose geometry is fixed; ready to be written. */
+    public final class Prepared {
+
+        final Sheet sheet;
+        final List<QrModules> modules;
+        final int rows;
+        final int fontSize;
+        final int captionHeight;
+        final int cellWidth;
+        final int cellHeight;
+        final int tileX;
+        final int tileY;
+
+        private Prepared(Sheet sheet, List<QrModules> modules, int rows) {
+            this.sheet = sheet;
+            this.modules = modules;
+            this.rows = rows;
+            this.fontSize = Math.max(10, sheet.tileSize() / 12);
+            this.captionHeight = sheet.captions() != null ? fontSize * 3 / 2 : 0;
+            // cells are whole bytes wide so that tiles packed in parallel never share a byte
+            this.cellWidth = (sheet.tileSize() + sheet.gap() + 7) & ~7;
+            this.cellHeight = sheet.tileSize() + captionHeight + sheet.gap();
+            this.tileX = ((cellWidth - sheet.tileSize()) / 2) & ~7;
+            this.tileY = sheet.gap() / 2;
+        }
+
+        public int width() {
+            return sheet.columns() * cellWidth;
+        }
+
+        // rows and cells are bounded before a sheet is prepared, so this fits
+        public int height() {
+            return Math.toIntExact((long) rows * cellHeight);
+        }
+
+        String caption(int index) {
+            return sheet.captions() != null ? sheet.captions().get(index) : null;
+        }
+    }
+
+    /**
+     * Checks the layout and encodes every content. Throws {@link IllegalArgumentException}
+     * for a layout or content that cannot be drawn.
+     */
+    public Prepared prepare(Sheet sheet) throws WriterException {
+        List<String> contents = sheet.contents();
+        if (contents == null || contents.isEmpty())
+            throw new IllegalArgumentException("no contents");
+        if (contents.size() > maxTiles)
+            throw new IllegalArgumentException("at most " + maxTiles + " codes per sheet");
+        if (sheet.captions() != null && sheet.captions().size() != contents.size())
+            throw new IllegalArgumentException("captions must match contents");
+        if (sheet.columns() < 1 || sheet.columns() > MAX_COLUMNS)
+            throw new IllegalArgumentException("columns must be between 1 and " + MAX_COLUMNS);
+        if (sheet.tileSize() < MIN_TILE_SIZE || sheet.tileSize() > MAX_TILE_SIZE)
+            throw new IllegalArgumentException(
+                    "tile size must be between " + MIN_TILE_SIZE + " and " + MAX_TILE_SIZE);
+        if (sheet.gap() < 0 || sheet.gap() > MAX_GAP)
+            throw new IllegalArgumentException("gap must be between 0 and " + MAX_GAP);
+        int needed = (contents.size() + sheet.columns() - 1) / sheet.columns();
+        if (sheet.rows() != 0 && sheet.rows() < needed)
+            throw new IllegalArgumentException(contents.size() + " codes do not fit " + sheet.rows() + " rows");
+        if ((long) sheet.rows() * sheet.columns() > maxTiles)
+            throw new IllegalArgumentException("at most " + maxTiles + " cells per sheet");
+        List<QrModules> modules = new ArrayList<>(contents.size());
+        Prepared prepared = new Prepared(sheet, modules, Math.max(sheet.rows(), needed));
+        if ((long) prepared.width() * prepared.height() > maxPixels)
+            throw new IllegalArgumentException("at most " + maxPixels + " pixels per sheet");
+
+        List<FutureTask<QrModules>> tasks = new ArrayList<>(contents.size());
+        try {
+            for (String content : contents) {
+                FutureTask<QrModules> task = new FutureTask<>(() -> qrService.modules(content, sheet.ecc()));
+                tasks.add(task);
+                while (true) {
+                    try {
+                        scheduler.executor().execute(task);
+                        break;
+                    } catch (RenderRejectedException e) {
+                        // the render queue is full: make room by collecting the oldest of ours
+                        if (modules.size() < tasks.size() - 1)
+                            modules.add(tile(tasks.get(modules.size()), sheet));
+                        else
+                            Thread.sleep(10);
+                    }
+                }
+            }
+            while (modules.size() < tasks.size())
+                modules.add(tile(tasks.get(modules.size()), sheet));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while encoding a sheet", e);
+        } finally {
+            for (FutureTask<QrModules> task : tasks)
+                task.cancel(false);
+        }
+        return prepared;
+    }
+
+    private static QrModules tile(FutureTask<QrModules> task, Sheet sheet) throws WriterException {
+        QrModules tile = await(task, WriterException.class);
+        int needed = tile.modules().getWidth() + QrRaster.QUIET_ZONE * 2;
+        if (needed > sheet.tileSize())
+            throw new IllegalArgumentException(
+                    "version " + tile.version() + " codes need tiles of at least " + needed + " pixels");
+        return tile;
+    }
+
+    /** The sheet as a PNG, written on the render pool. */
+    public byte[] renderPng(Prepared prepared) throws IOException {
+        return scheduler.call(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            writePng(prepared, out);
+            return out.toByteArray();
+        });
+    }
+
+    /** The sheet as a PDF, written on the render pool. */
+    public byte[] renderPdf(Prepared prepared) throws IOException {
+        return scheduler.call(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            writePdf(prepared, out);
+            return out.toByteArray();
+        });
+    }
+
+    public void writePng(Prepared prepared, OutputStream out) throws IOException {
+        Bands bands = new Bands(prepared);
+        try {
+            new PngEncoder().write(bands, prepared.sheet.onColor(), prepared.sheet.offColor(), out);
+        } finally {
+            bands.cancel();
+        }
+    }
+
+    public void writePdf(Prepared prepared, OutputStream out) throws IOException {
+        SheetPdfWriter.write(prepared, out);
+    }
+
+    // with the render queue full a task is left to the band's writer, which runs any task
+    // that has not started when it needs the band
+    private void submit(FutureTask<?> task) {
+        try {
+            scheduler.executor().execute(task);
+        } catch (RenderRejectedException e) {
+            // not queued
+        }
+    }
+
+    private static <T, X extends Exception> T await(FutureTask<T> task, Class<X> checked) throws X {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while rendering a sheet", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (checked.isInstance(cause))
+                throw checked.cast(cause);
+            if (cause instanceof RuntimeException re)
+                throw re;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** The sheet as scanlines for {@link PngEncoder}, packed band by band on the render pool. */
+    private final class Bands implements PngEncoder.Scanlines {
+
+        private final Prepared prepared;
+        private final int rowBytes;
+        private final byte[][] buffers = new byte[2][];
+        private final List<List<FutureTask<Void>>> pending = new ArrayList<>(List.of(List.of(), List.of()));
+        private int current = -1;
+
+        Bands(Prepared prepared) {
+            this.prepared = prepared;
+            this.rowBytes = (prepared.width() + 7) / 8;
+            buffers[0] = new byte[prepared.cellHeight * rowBytes];
+            buffers[1] = new byte[prepared.cellHeight * rowBytes];
+        }
+
+        @Override
+        public int getWidth() {
+            return prepared.width();
+        }
+
+        @Override
+        public int getHeight() {
+            return prepared.height();
+        }
+
+        @Override
+        public boolean repeatsPrevious(int y) {
+            return false;
+        }
+
+        @Override
+        public void pack(int y, byte[] scanline) {
+            int band = y / prepared.cellHeight;
+            if (band != current) {
+                if (band == 0)
+                    start(0);
+                // the writer may itself be a render thread, so a task still queued behind it
+                // is run here rather than waited for; running a started task does nothing
+                for (FutureTask<Void> task : pending.get(band & 1)) {
+                    task.run();
+                    await(task, RuntimeException.class);
+                }
+                current = band;
+                if (band + 1 < prepared.rows)
+                    start(band + 1);
+            }
+            System.arraycopy(buffers[band & 1], (y - band * prepared.cellHeight) * rowBytes, scanline, 1, rowBytes);
+        }
+
+        private void start(int band) {
+            byte[] buffer = buffers[band & 1];
+            Arrays.fill(buffer, (byte) 0);
+            List<FutureTask<Void>> tasks = new ArrayList<>(prepared.sheet.columns());
+            int first = band * prepared.sheet.columns();
+            int last = Math.min(first + prepared.sheet.columns(), prepared.modules.size());
+            for (int index = first; index < last; index++) {
+                int tile = index;
+                FutureTask<Void> task = new FutureTask<>(() -> {
+                    packTile(tile, buffer);
+                    return null;
+                });
+                tasks.add(task);
+                submit(task);
+            }
+            pending.set(band & 1, tasks);
+        }
+
+        private void packTile(int index, byte[] buffer) {
+            int tileSize = prepared.sheet.tileSize();
+            int tileBytes = (tileSize + 7) / 8;
+            int x0 = (index % prepared.sheet.columns()) * prepared.cellWidth + prepared.tileX;
+            QrRaster raster = new QrRaster(prepared.modules.get(index).modules(), tileSize, tileSize);
+            byte[] line = new byte[1 + tileBytes];
+            for (int y = 0; y < tileSize; y++) {
+                if (!raster.repeatsPrevious(y)) {
+                    Arrays.fill(line, (byte) 0);
+                    raster.pack(y, line);
+                }
+                System.arraycopy(line, 1, buffer, (prepared.tileY + y) * rowBytes + x0 / 8, tileBytes);
+            }
+
+            String caption = prepared.caption(index);
+            if (caption == null || caption.isBlank())
+                return;
+            // index 1 of a binary image is white; drawn in white, the text lands on the
+            // bits the PNG palette shows in the code's own color
+            BufferedImage text = new BufferedImage(tileSize, prepared.captionHeight, BufferedImage.TYPE_BYTE_BINARY);
+            Graphics2D g = text.createGraphics();
+            g.setColor(Color.WHITE);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, prepared.fontSize));
+            FontMetrics metrics = g.getFontMetrics();
+            int x = Math.max(0, (tileSize - metrics.stringWidth(caption)) / 2);
+            g.drawString(caption, x, (prepared.captionHeight + metrics.getAscent() - metrics.getDescent()) / 2);
+            g.dispose();
+            byte[] bits = ((DataBufferByte) text.getRaster().getDataBuffer()).getData();
+            int top = prepared.tileY + tileSize;
+            for (int y = 0; y < prepared.captionHeight; y++)
+                System.arraycopy(bits, y * tileBytes, buffer, (top + y) * rowBytes + x0 / 8, tileBytes);
+        }
+
+        void cancel() {
+            for (List<FutureTask<Void>> tasks : pending) {
+                for (FutureTask<Void> task : tasks)
+                    task.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes a module grid as SVG. Dark modules are merged into horizontal runs that all go
+ * into a single path in module units, so output size and cost follow the module count,
+ * not the pixel size. Layout matches {@link QrRaster}.
+ */
+public final class SvgWriter {
+
+    private SvgWriter() {
+    }
+
+    public static void write(QrRaster raster, int onColor, int offColor, OutputStream out) throws IOException {
+        BitMatrix modules = raster.getModules();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 8192);
+        w.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\" shape-rendering=\"crispEdges\">\n");
+        w.write("<rect width=\"" + width + "\" height=\"" + height + "\"" + fill(offColor) + "/>\n");
+        w.write("<path transform=\"translate(" + raster.getLeft() + " " + raster.getTop() + ") scale("
+                + raster.getMultiple() + ")\"" + fill(onColor) + " d=\"");
+
+        // after "z" the current point returns to the start of the run, so each run can
+        // begin with a short relative move from the previous one
+        int lastX = 0;
+        int lastY = 0;
+        boolean first = true;
+        StringBuilder d = new StringBuilder(64);
+        for (int y = 0; y < modules.getHeight(); y++) {
+            int x = 0;
+            while (x < modules.getWidth()) {
+                if (!modules.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < modules.getWidth() && modules.get(x, y))
+                    x++;
+                int run = x - start;
+
+                d.setLength(0);
+                if (first)
+                    d.append('M').append(start).append(' ').append(y);
+                else
+                    d.append('m').append(start - lastX).append(' ').append(y - lastY);
+                d.append('h').append(run).append("v1h-").append(run).append('z');
+                w.append(d);
+
+                lastX = start;
+                lastY = y;
+                first = false;
+            }
+        }
+        w.write("\"/>\n</svg>\n");
+        w.flush();
+    }
+
+    private static String fill(int argb) {
+        String attr = " fill=\"#%06x\"".formatted(argb & 0xFFFFFF);
+        int alpha = argb >>> 24;
+        if (alpha != 0xFF)
+            attr += String.format(Locale.ROOT, " fill-opacity=\"%.3f\"", alpha / 255.0);
+        return attr;
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.qrcodegenerator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Stores uploaded images under their SHA-256, so uploading the same image again costs no
+ * disk. The upload is streamed to a temporary file through a channel transfer while it is
+ * hashed, and then moved into place; it is never held in memory. The image type is taken
+ * from the first bytes, not from the client's file name or content type. Images whose
+ * header declares more than {@code app.upload.max-pixels} pixels are rejected as too large,
+ * since a small file can decode to a raster that does not fit in the heap.
+ *
+ * <p>When variant widths are configured, downscaled copies ({@code <hash>-<width>.<ext>})
+ * are made in the background on the render pool for the imageUrl landing page.
+ */
+@Component
+public class UploadStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadStore.class);
+
+    public enum ImageType {
+        PNG("png"), JPEG("jpg"), GIF("gif"), WEBP("webp");
+
+        private final String extension;
+
+        ImageType(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        static ImageType sniff(byte[] head, int length) {
+            if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G')
+                return PNG;
+            if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF)
+                return JPEG;
+            if (length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8')
+                return GIF;
+            if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                    && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P')
+                return WEBP;
+            return null;
+        }
+    }
+
+    public static class RejectedUploadException extends IOException {
+
+        private final boolean tooLarge;
+
+        RejectedUploadException(String message, boolean tooLarge) {
+            super(message);
+            this.tooLarge = tooLarge;
+        }
+
+        public boolean isTooLarge() {
+            return tooLarge;
+        }
+    }
+
+    /** A stored upload; {@code duplicate} is set when the same bytes were already there. */
+    public record Stored(String name, ImageType type, long size, boolean duplicate) {
+    }
+
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+    private static final int SNIFF_BYTES = 12;
+    private static final long TRANSFER_CHUNK = 1 << 20;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final Set<ImageType> allowedTypes;
+    private final List<Integer> variantWidths;
+    private final RenderScheduler scheduler;
+
+    @Autowired
+    public UploadStore(@Value("${app.upload.max-file-size:10MB}") DataSize maxFileSize,
+            @Value("${app.upload.max-pixels:25000000}") long maxPixels,
+            @Value("${app.upload.allowed-types:png,jpeg,gif,webp}") List<String> allowedTypes,
+            @Value("${app.upload.variant-widths:}") List<Integer> variantWidths,
+            RenderScheduler scheduler) {
+        this(Paths.get(System.getProperty("user.dir"), "uploads"), maxFileSize, maxPixels, allowedTypes,
+                variantWidths, scheduler);
+    }
+
+    UploadStore(Path dir, DataSize maxFileSize, long maxPixels, List<String> allowedTypes,
+            List<Integer> variantWidths, RenderScheduler scheduler) {
+        this.dir = dir;
+        this.maxBytes = maxFileSize.toBytes();
+        this.maxPixels = maxPixels;
+        this.allowedTypes = allowedTypes.stream()
+                .map(type -> ImageType.valueOf(type.trim().toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toUnmodifiableSet());
+        this.variantWidths = variantWidths.stream().filter(w -> w != null && w > 0).sorted().toList();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Streams {@code in} into the store. The type is checked on the first bytes and the
+     * size limit while copying, so a rejected upload is not read any further; the pixel
+     * limit is checked on the image header once the upload is on disk.
+     */
+    public Stored store(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 8192);
+        buffered.mark(SNIFF_BYTES);
+        byte[] head = buffered.readNBytes(SNIFF_BYTES);
+        buffered.reset();
+        ImageType type = ImageType.sniff(head, head.length);
+        if (type == null || !allowedTypes.contains(type))
+            throw new RejectedUploadException("unsupported image type", false);
+
+        Files.createDirectories(dir);
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(dir, ".upload-", ".tmp");
+        try {
+            long size = 0;
+            try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(buffered, digest));
+                    FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                // read one byte past the limit to tell "exactly at" from "over"
+                long n;
+                while ((n = target.transferFrom(source, size, Math.min(TRANSFER_CHUNK, maxBytes + 1 - size))) > 0) {
+                    size += n;
+                    if (size > maxBytes)
+                        throw new RejectedUploadException("upload is larger than " + maxBytes + " bytes", true);
+                }
+            }
+            if (pixels(temp) > maxPixels)
+                throw new RejectedUploadException("image is larger than " + maxPixels + " pixels", true);
+
+            String name = HexFormat.of().formatHex(digest.digest()) + "." + type.extension();
+            Path target = dir.resolve(name);
+            boolean duplicate = true;
+            if (!Files.exists(target)) {
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    duplicate = false;
+                } catch (FileAlreadyExistsException e) {
+                    // a concurrent upload of the same bytes got there first
+                }
+            }
+            if (!duplicate)
+                scheduleVariants(target, name, type);
+            return new Stored(name, type, size, duplicate);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Widths of the downscaled copies of {@code name} that exist right now, smallest first. */
+    public List<Integer> variants(String name) {
+        if (!STORED_NAME.matcher(name).matches())
+            return List.of();
+        List<Integer> existing = new ArrayList<>();
+        for (int width : variantWidths) {
+            if (Files.exists(dir.resolve(variantName(name, width))))
+                existing.add(width);
+        }
+        return existing;
+    }
+
+    public static String variantName(String name, int width) {
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + "-" + width + name.substring(dot);
+    }
+
+    private void scheduleVariants(Path original, String name, ImageType type) {
+        // animated GIFs would lose their frames, and the JDK cannot decode WebP
+        if (variantWidths.isEmpty() || type == ImageType.GIF || type == ImageType.WEBP)
+            return;
+        try {
+            scheduler.executor().execute(() -> {
+                try {
+                    writeVariants(original, name, type);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not make variants of {}", name, e);
+                }
+            });
+        } catch (RenderRejectedException e) {
+            // variants are an optimization; the page falls back to the original
+            log.debug("Render queue full, skipping variants of {}", name);
+        }
+    }
+
+    void writeVariants(Path original, String name, ImageType type) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            ImageReader reader = reader(in);
+            if (reader == null)
+                return;
+            try {
+                // the size comes from the header; only an image within the limit is decoded
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Not making variants of {}: {} pixels is over the limit", name, pixels);
+                    return;
+                }
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        String format = type == ImageType.JPEG ? "jpg" : "png";
+        for (int width : variantWidths) {
+            if (width >= image.getWidth())
+                break;
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            BufferedImage scaled = new BufferedImage(width, height,
+                    type == ImageType.JPEG ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+            g.dispose();
+
+            // written under a temporary name so a half-written variant is never served
+            Path temp = Files.createTempFile(dir, ".variant-", ".tmp");
+            try {
+                if (!ImageIO.write(scaled, format, temp.toFile()))
+                    return;
+                Files.move(temp, dir.resolve(variantName(name, width)), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    // width times height from the image header, or -1 for a format the JDK cannot read (WebP)
+    private static long pixels(Path image) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            ImageReader reader = reader(in);
+            if (reader == null)
+                return -1;
+            try {
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader reader(ImageInputStream in) {
+        if (in == null)
+            return null;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext())
+            return null;
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
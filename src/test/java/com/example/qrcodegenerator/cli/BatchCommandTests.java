@@ -0,0 +1,176 @@
+package com.example.qrcodegenerator.cli;
+
+import com.example.qrcodegenerator.service.QrService;
+import com.example.qrcodegenerator.service.RenderMetrics;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchCommandTests {
+
+    @TempDir
+    Path dir;
+
+    private final RenderScheduler scheduler = new RenderScheduler(2, 8, Duration.ofSeconds(10), Duration.ofSeconds(1));
+    private final QrService qrService = new QrService(0, 0, "native", scheduler,
+            new RenderMetrics(new SimpleMeterRegistry()));
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void writesShardedDirectoriesAndRecordsFailures() throws Exception {
+        Path input = csv(25);
+        Files.writeString(input, "\"quoted, with\nnewline\",,svg,,\n,,,bad row,\n", StandardOpenOption.APPEND);
+        Path out = dir.resolve("out");
+
+        BatchCommand.Summary summary = command("dir").run(input, out);
+
+        assertThat(summary.written()).isEqualTo(26);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(Files.list(out.resolve("00000")).count()).isEqualTo(10);
+        assertThat(out.resolve("00000/code-1.png")).exists();
+        assertThat(out.resolve("00002/code-25.png")).exists();
+        assertThat(out.resolve("00002/000000026.svg")).content().startsWith("<svg");
+        assertThat(Files.readAllLines(out.resolve("errors.ndjson")))
+                .singleElement().asString().contains("\"row\":27");
+        assertThat(checkpoint(out).getProperty("complete")).isEqualTo("true");
+        assertThat(checkpoint(out).getProperty("errorBytes"))
+                .isEqualTo(Long.toString(Files.size(out.resolve("errors.ndjson"))));
+    }
+
+    @Test
+    void resumesAfterTheCheckpoint() throws Exception {
+        Path input = csv(25);
+        Path out = dir.resolve("out");
+        command("dir").run(input, out);
+
+        // roll back to a checkpoint after row 10, as if the run had been stopped there
+        long offset = Files.readAllLines(input).stream().limit(11).mapToLong(line -> line.length() + 1).sum();
+        new BatchCommand.Checkpoint(10, offset, 0, false).save(out.resolve("checkpoint.properties"), input);
+        Files.delete(out.resolve("00000/code-1.png"));
+        Files.delete(out.resolve("00001/code-11.png"));
+
+        BatchCommand.Summary summary = command("dir").run(input, out);
+
+        assertThat(summary.written()).isEqualTo(15);
+        assertThat(out.resolve("00000/code-1.png")).doesNotExist();
+        assertThat(out.resolve("00001/code-11.png")).exists();
+        assertThat(checkpoint(out).getProperty("rows")).isEqualTo("25");
+        assertThat(command("dir").run(input, out).written()).isEqualTo(25);
+    }
+
+    @Test
+    void resumingDoesNotLogFailuresTwice() throws Exception {
+        Path input = csv(25);
+        List<String> lines = new ArrayList<>(Files.readAllLines(input));
+        lines.set(5, ",64,,no-text-5,M");
+        lines.set(15, ",64,,no-text-15,M");
+        Files.write(input, lines);
+        Path out = dir.resolve("out");
+        command("dir").run(input, out);
+
+        // roll back to the checkpoint after row 10: row 5's failure is before it, row 15's after
+        String logged = Files.readString(out.resolve("errors.ndjson"));
+        long offset = lines.stream().limit(11).mapToLong(line -> line.length() + 1).sum();
+        new BatchCommand.Checkpoint(10, offset, logged.indexOf('\n') + 1, false)
+                .save(out.resolve("checkpoint.properties"), input);
+        command("dir").run(input, out);
+
+        assertThat(Files.readAllLines(out.resolve("errors.ndjson")))
+                .satisfiesExactly(first -> assertThat(first).contains("\"row\":5"),
+                        second -> assertThat(second).contains("\"row\":15"));
+    }
+
+    @Test
+    void rollsZipPartsAndReadsNdjson() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= 25; i++)
+            ndjson.append("{\"text\":\"https://example.com/").append(i).append("\",\"size\":64}\n");
+        Path input = Files.writeString(dir.resolve("codes.ndjson"), ndjson);
+        Path out = dir.resolve("out");
+
+        command("zip").run(input, out);
+
+        assertThat(entries(out.resolve("part-00000.zip"))).hasSize(10).first().isEqualTo("000000001.png");
+        assertThat(entries(out.resolve("part-00002.zip"))).hasSize(5);
+        try (var files = Files.list(out)) {
+            assertThat(files.map(Path::toString)).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void keepsEveryRowWhenNamesRepeat() throws Exception {
+        StringBuilder csv = new StringBuilder("text,size,format,name,ecc\n");
+        for (int i = 1; i <= 12; i++)
+            csv.append("https://example.com/").append(i).append(",64,,").append(i % 2 == 0 ? "same" : "code-" + i)
+                    .append(",M\n");
+        // an explicit name that is also what the renaming would produce
+        csv.append("https://example.com/13,64,,same-000000014,M\nhttps://example.com/14,64,,same,M\n");
+        Path input = Files.writeString(dir.resolve("codes.csv"), csv);
+
+        BatchCommand.Summary directories = command("dir").run(input, dir.resolve("dir"));
+        BatchCommand.Summary zips = command("zip").run(input, dir.resolve("zip"));
+
+        assertThat(directories.written()).isEqualTo(14);
+        assertThat(zips.written()).isEqualTo(14);
+        try (var files = Files.list(dir.resolve("dir/00000"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).hasSize(10)
+                    .contains("same.png", "same-000000004.png", "same-000000010.png");
+        }
+        try (var files = Files.list(dir.resolve("dir/00001"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactlyInAnyOrder("code-11.png",
+                    "same.png", "same-000000014.png", "same-000000014-2.png");
+        }
+        assertThat(entries(dir.resolve("zip/part-00000.zip"))).hasSize(10).doesNotHaveDuplicates()
+                .contains("same.png", "same-000000004.png", "same-000000010.png");
+        assertThat(entries(dir.resolve("zip/part-00001.zip"))).containsExactly("code-11.png", "same.png",
+                "same-000000014.png", "same-000000014-2.png");
+    }
+
+    private BatchCommand command(String layout) {
+        return new BatchCommand(qrService, scheduler, JsonMapper.builder().build(), "", "", layout, 10, 10,
+                Duration.ofHours(1), 4);
+    }
+
+    private Path csv(int rows) throws Exception {
+        StringBuilder csv = new StringBuilder("text,size,format,name,ecc\n");
+        for (int i = 1; i <= rows; i++)
+            csv.append("https://example.com/").append(i).append(",64,,code-").append(i).append(",M\n");
+        return Files.writeString(dir.resolve("codes.csv"), csv);
+    }
+
+    private static Properties checkpoint(Path out) throws Exception {
+        Properties properties = new Properties();
+        try (var reader = Files.newBufferedReader(out.resolve("checkpoint.properties"))) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static List<String> entries(Path zip) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry())
+                names.add(entry.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.qrcodegenerator.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.warmup.rounds=2")
+class StartupWarmupTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ApplicationAvailability availability;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void warmsUpThroughTheServerBeforeReportingReady() throws Exception {
+        // the warmup's own POSTs went through MVC before the context was handed to the test
+        assertThat(registry.counter("qr.requests", "type", "vcard").count()).isGreaterThanOrEqualTo(1);
+        assertThat(registry.counter("qr.requests", "type", "url").count()).isGreaterThanOrEqualTo(1);
+
+        assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            HttpResponse<String> readiness = client.send(HttpRequest.newBuilder(
+                    URI.create("http://127.0.0.1:" + port + "/actuator/health/readiness")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertThat(readiness.statusCode()).isEqualTo(200);
+            assertThat(readiness.body()).contains("\"UP\"");
+        }
+    }
+}
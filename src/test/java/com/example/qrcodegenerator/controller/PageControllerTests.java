@@ -0,0 +1,112 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.service.PageStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PageControllerTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PageStore pageStore;
+
+    @Test
+    void servesStoredPagesAsImmutable() throws Exception {
+        String id = pageStore.put("<html><body>page controller test</body></html>");
+
+        mvc.perform(get("/pages/" + id + ".html"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("<html><body>page controller test</body></html>"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + id + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+
+        mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.IF_NONE_MATCH, "\"" + id + "\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void servesGzipToClientsThatAcceptIt() throws Exception {
+        String html = "<html><body>" + "gzip me ".repeat(100) + "</body></html>";
+        String id = pageStore.put(html);
+
+        MvcResult result = mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.ACCEPT_ENCODING, "gzip, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn();
+        byte[] body = result.getResponse().getContentAsByteArray();
+        assertThat(body.length).isLessThan(html.length());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(html);
+        }
+    }
+
+    @Test
+    void honorsQvaluesInAcceptEncoding() throws Exception {
+        String id = pageStore.put("<html><body>" + "no gzip ".repeat(100) + "</body></html>");
+
+        for (String refused : new String[] { "gzip;q=0", "br, gzip; q=0.0", "*;q=0", "identity" })
+            mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.ACCEPT_ENCODING, refused))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        for (String accepted : new String[] { "gzip;q=0.5", "br, *", "x-gzip" })
+            mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.ACCEPT_ENCODING, accepted))
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+    }
+
+    @Test
+    void tagsTheEncodingThatIsActuallySent() throws Exception {
+        // too small for gzip to pay off, so it is sent as is even to clients that accept gzip
+        String id = pageStore.put("<p>tiny</p>");
+
+        mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + id + "\""));
+        mvc.perform(get("/pages/" + id + ".html").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + id + ".gz\""))
+                .andExpect(status().isOk());
+
+        String missing = "f".repeat(32);
+        mvc.perform(get("/pages/" + missing + ".html").header(HttpHeaders.IF_NONE_MATCH, "\"" + missing + "\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void fallsBackToPagesWrittenBeforeTheStore() throws Exception {
+        mvc.perform(get("/pages/1765308375593-2374.html"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("<html>")))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1765308375593-2374\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+
+        mvc.perform(get("/pages/1765308375593-2374.html").header(HttpHeaders.IF_NONE_MATCH, "\"1765308375593-2374\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void unknownAndMalformedIdsAreNotFound() throws Exception {
+        mvc.perform(get("/pages/" + "0".repeat(32) + ".html")).andExpect(status().isNotFound());
+        mvc.perform(get("/pages/..%2Fpom.xml.html")).andExpect(status().isNotFound());
+    }
+}
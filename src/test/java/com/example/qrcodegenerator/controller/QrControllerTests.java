@@ -0,0 +1,191 @@
+package com.example.qrcodegenerator.controller;
+
+import com.example.qrcodegenerator.service.QrFormat;
+import com.example.qrcodegenerator.service.QrService;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class QrControllerTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private QrService qrService;
+
+    @Test
+    void getReturnsStrongEtagAndHonorsIfNoneMatch() throws Exception {
+        MvcResult first = mvc.perform(get("/api/qr").param("text", "etag-test").param("theme", "forest"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // the same colors spelled out as hex resolve to the same render
+        mvc.perform(get("/api/qr").param("text", "etag-test").param("fg", "#2E7D32").param("bg", "#E8F5E9")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void revalidatesWithoutEncoding() throws Exception {
+        String etag = qrService.etag("never-rendered", 300, null, null, QrFormat.PNG, ErrorCorrectionLevel.L);
+        long misses = qrService.moduleCacheStats().misses();
+
+        mvc.perform(get("/api/qr").param("text", "never-rendered").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        assertThat(qrService.moduleCacheStats().misses()).isEqualTo(misses);
+    }
+
+    @Test
+    void streamsMissesAndSetsContentLengthOnlyForHits() throws Exception {
+        MvcResult started = mvc.perform(get("/api/qr").param("text", "stream-test").param("size", "640"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult miss = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_LENGTH))
+                .andReturn();
+        byte[] png = miss.getResponse().getContentAsByteArray();
+
+        started = mvc.perform(get("/api/qr").param("text", "stream-test").param("size", "640")).andReturn();
+        MvcResult hit = mvc.perform(asyncDispatch(started))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, png.length))
+                .andReturn();
+        assertThat(hit.getResponse().getContentAsByteArray()).isEqualTo(png);
+    }
+
+    @Test
+    void reportsVersionAndErrorCorrectionLevel() throws Exception {
+        MvcResult started = mvc.perform(get("/api/qr").param("text", "https://example.com/menu?table=12")
+                .param("ecc", "q"))
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-QR-Version", "4"))
+                .andExpect(header().string("X-QR-ECC", "Q"));
+
+        mvc.perform(get("/api/qr").param("text", "ecc-test").param("ecc", "X"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postRejectsBodiesThatDoNotBind() throws Exception {
+        for (String body : new String[] { "{\"type\":\"vcard\",\"payload\":\"Jane\"}",
+                "{\"type\":\"text\",\"text\":\"x\",\"size\":\"large\"}", "[1, 2]",
+                "{\"type\":\"social\",\"payload\":{\"facebook\":\"javascript:alert(1)\"}}" })
+            mvc.perform(post("/api/qr").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void sheetReturnsPngOrPdf() throws Exception {
+        String body = """
+                {"contents":["https://example.com/1","https://example.com/2","https://example.com/3"],
+                 "captions":["One","Two","Three"],"columns":2,"tileSize":120,"theme":"indigo"}
+                """;
+        MvcResult png = mvc.perform(post("/api/qr/sheet").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE))
+                .andReturn();
+        assertThat(png.getResponse().getContentAsByteArray()).startsWith(0x89, 'P', 'N', 'G');
+
+        MvcResult pdf = mvc.perform(post("/api/qr/sheet").contentType(MediaType.APPLICATION_JSON)
+                .content(body.replace("\"columns\"", "\"format\":\"pdf\",\"columns\"")))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE))
+                .andReturn();
+        assertThat(pdf.getResponse().getContentAsString()).startsWith("%PDF-");
+
+        mvc.perform(post("/api/qr/sheet").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"contents\":[\"a\",\"b\"],\"columns\":1,\"rows\":1}"))
+                .andExpect(status().isBadRequest());
+        // far more cells than codes, and more pixels than a sheet may have
+        mvc.perform(post("/api/qr/sheet").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"contents\":[\"a\"],\"columns\":1,\"rows\":2000000,\"tileSize\":1200}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/qr/sheet").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"contents\":[\"a\"],\"columns\":20,\"rows\":50,\"tileSize\":1200}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchStreamsZipWithPerEntryErrors() throws Exception {
+        String ndjson = """
+                {"type":"text","text":"first","size":120}
+                {"type":"url","url":"https://example.com","theme":"sunset"}
+                {"type":"text","text":"bad size","size":"huge"}
+                """;
+        MvcResult started = mvc.perform(post("/api/qr/batch")
+                .contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(zipEntries(result.getResponse().getContentAsByteArray()))
+                .containsOnlyKeys("000001.png", "000002.png", "000003.error.json");
+
+        String array = "[{\"text\":\"a\"},{\"text\":\"b\"}]";
+        started = mvc.perform(post("/api/qr/batch").contentType(MediaType.APPLICATION_JSON).content(array))
+                .andReturn();
+        result = mvc.perform(asyncDispatch(started)).andReturn();
+        assertThat(zipEntries(result.getResponse().getContentAsByteArray()))
+                .containsOnlyKeys("000001.png", "000002.png");
+    }
+
+    @Test
+    void recordsStageTimingsAndRequestTypes() throws Exception {
+        double vcards = registry.get("qr.requests").tag("type", "vcard").counter().count();
+        String body = """
+                {"type":"vcard","payload":{"firstName":"Jane","lastName":"Metrics"},"size":200}
+                """;
+        MvcResult started = mvc.perform(post("/api/qr").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        assertThat(registry.get("qr.requests").tag("type", "vcard").counter().count()).isEqualTo(vcards + 1);
+        for (String stage : new String[] { "encode", "raster", "compress", "output" })
+            assertThat(registry.get("qr.stage").tag("stage", stage).timer().count()).as(stage).isPositive();
+        assertThat(registry.get("qr.output.size").tag("format", "png").summary().count()).isPositive();
+    }
+
+    private static Map<String, byte[]> zipEntries(byte[] zip) throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry())
+                entries.put(entry.getName(), in.readAllBytes());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.qrcodegenerator.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UploadControllerTests {
+
+    private static final String NAME = "0123456789abcdef".repeat(4) + ".png";
+
+    @Autowired
+    private MockMvc mvc;
+
+    private final Path file = Paths.get(System.getProperty("user.dir"), "uploads", NAME);
+    private final byte[] data = new byte[100_000];
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        Files.createDirectories(file.getParent());
+        Files.write(file, data);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void servesWholeFilesAsImmutable() throws Exception {
+        MvcResult result = mvc.perform(get("/uploads/" + NAME))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, data.length))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andReturn();
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(data);
+
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(get("/uploads/" + NAME).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void servesSingleByteRanges() throws Exception {
+        mvc.perform(get("/uploads/" + NAME).header(HttpHeaders.RANGE, "bytes=1000-1009"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1009/" + data.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(data, 1000, 1010)));
+
+        mvc.perform(get("/uploads/" + NAME).header(HttpHeaders.RANGE, "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(data, data.length - 10, data.length)));
+
+        mvc.perform(get("/uploads/" + NAME).header(HttpHeaders.RANGE, "bytes=200000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + data.length));
+    }
+
+    @Test
+    void missingAndHiddenFilesAreNotFound() throws Exception {
+        mvc.perform(get("/uploads/" + "f".repeat(64) + ".png")).andExpect(status().isNotFound());
+        mvc.perform(get("/uploads/.upload-123.tmp")).andExpect(status().isNotFound());
+    }
+}
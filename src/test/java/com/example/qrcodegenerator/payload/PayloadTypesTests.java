@@ -0,0 +1,147 @@
+package com.example.qrcodegenerator.payload;
+
+import com.example.qrcodegenerator.service.PageStore;
+import com.example.qrcodegenerator.service.RenderMetrics;
+import com.example.qrcodegenerator.service.RenderScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PayloadTypesTests {
+
+    private static final PayloadContext CONTEXT = new PayloadContext("http://local:9091", "https://public");
+
+    @TempDir
+    Path dir;
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+    private final RenderScheduler scheduler = new RenderScheduler(1, 8, Duration.ofSeconds(10), Duration.ofSeconds(1));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RenderMetrics metrics = new RenderMetrics(registry);
+    private PageStore pageStore;
+    private List<PayloadType<?>> builtIn;
+
+    @BeforeEach
+    void setUp() {
+        pageStore = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        LandingPages pages = new LandingPages(pageStore, scheduler, metrics);
+        builtIn = List.of(new TextPayload(), new UrlPayload(), new VCardPayload(), new SocialPayload(pages));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pageStore.destroy();
+        scheduler.destroy();
+    }
+
+    @Test
+    void buildsVCardsWithEscapedValues() throws Exception {
+        String vcard = content(new PayloadTypes(builtIn, mapper, metrics), Map.of("type", "VCard", "payload",
+                Map.of("firstName", "Ada", "lastName", "Lovelace", "org", "Engines, Ltd", "phone", "")));
+
+        assertThat(vcard).isEqualTo("BEGIN:VCARD\nVERSION:3.0\nN:Lovelace;Ada\nFN:Ada Lovelace\n"
+                + "ORG:Engines\\, Ltd\nEND:VCARD\n");
+    }
+
+    @Test
+    void keepsVCardUrlsAsGivenApartFromLineBreaks() throws Exception {
+        String vcard = content(new PayloadTypes(builtIn, mapper, metrics), Map.of("type", "vcard", "payload",
+                Map.of("lastName", "Lovelace", "url", "https://example.com/a,b;c?x=1\r\nEMAIL:evil@example.com")));
+
+        assertThat(vcard).contains("\nURL:https://example.com/a,b;c?x=1EMAIL:evil@example.com\nEND:VCARD\n")
+                .doesNotContain("\nEMAIL:");
+    }
+
+    @Test
+    void putsTheAddressInTheStreetComponent() throws Exception {
+        String vcard = content(new PayloadTypes(builtIn, mapper, metrics), Map.of("type", "vcard", "payload",
+                Map.of("lastName", "Lovelace", "address", "12 St James's Square; London, SW1Y 4JH")));
+
+        assertThat(vcard).contains("\nADR:;;12 St James's Square\\; London\\, SW1Y 4JH;;;;\n");
+    }
+
+    @Test
+    void storesSocialPagesWithEscapedLinks() throws Exception {
+        String url = content(new PayloadTypes(builtIn, mapper, metrics), Map.of("type", "social", "payload",
+                Map.of("twitter", "https://x.com/a'onmouseover='alert(1)", "linkedin", " ")));
+
+        assertThat(url).startsWith("http://local:9091/pages/").endsWith(".html");
+        String id = url.substring(url.lastIndexOf('/') + 1, url.length() - ".html".length());
+        String html = new String(pageStore.get(id), StandardCharsets.UTF_8);
+        assertThat(html).contains("<a href='https://x.com/a&#39;onmouseover=&#39;alert(1)' class='twitter'")
+                .doesNotContain("facebook' target").doesNotContain("linkedin' target");
+    }
+
+    @Test
+    void socialLinksMustBeWebUrls() throws Exception {
+        PayloadTypes types = new PayloadTypes(builtIn, mapper, metrics);
+
+        for (String link : new String[] { "javascript:alert(1)", "JavaScript:alert(1)", " javascript:alert(1)",
+                "data:text/html,<script>alert(1)</script>", "java\tscript:alert(1)", "//evil.example/", "x.com/me" })
+            assertThatThrownBy(() -> content(types, Map.of("type", "social", "payload", Map.of("twitter", link))))
+                    .as(link).isInstanceOf(IllegalArgumentException.class);
+        assertThat(content(types, Map.of("type", "social", "payload",
+                Map.of("facebook", "HTTP://facebook.com/me", "twitter", "https://x.com/me")))).endsWith(".html");
+    }
+
+    @Test
+    void unknownTypesAreTextAndBadBodiesDoNotBind() throws Exception {
+        PayloadTypes types = new PayloadTypes(builtIn, mapper, metrics);
+
+        assertThat(content(types, Map.of("type", "nope", "text", "hello"))).isEqualTo("hello");
+        assertThat(content(types, Map.of("text", "untyped"))).isEqualTo("untyped");
+        assertThat(content(types, Map.of("type", "url"))).isEmpty();
+        assertThatThrownBy(() -> content(types, Map.of("type", "vcard", "payload", List.of("x"))))
+                .isInstanceOf(JacksonException.class);
+    }
+
+    @Test
+    void newTypesArePickedUpByName() throws Exception {
+        record Sms(String number, String message) {
+        }
+        List<PayloadType<?>> types = new ArrayList<>(builtIn);
+        types.add(new PayloadType<Sms>() {
+            @Override
+            public String name() {
+                return "sms";
+            }
+
+            @Override
+            public Class<Sms> requestType() {
+                return Sms.class;
+            }
+
+            @Override
+            public String content(Sms request, PayloadContext context) {
+                return "SMSTO:" + request.number() + ":" + request.message();
+            }
+        });
+
+        assertThat(content(new PayloadTypes(types, mapper, metrics), Map.of("type", "sms", "number", "+15551234567",
+                "message", "hi", "size", 200))).isEqualTo("SMSTO:+15551234567:hi");
+        metrics.countRequest("SMS");
+        assertThat(registry.get("qr.requests").tag("type", "sms").counter().count()).isEqualTo(1);
+        assertThat(registry.get("qr.requests").tag("type", "other").counter().count()).isZero();
+        types.add(new TextPayload());
+        assertThatThrownBy(() -> new PayloadTypes(types, mapper, metrics)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private String content(PayloadTypes types, Map<String, Object> body) throws Exception {
+        return types.content(mapper.valueToTree(body), CONTEXT);
+    }
+}
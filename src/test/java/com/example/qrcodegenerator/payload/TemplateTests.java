@@ -0,0 +1,64 @@
+package com.example.qrcodegenerator.payload;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TemplateTests {
+
+    @Test
+    void splicesEscapedFieldsAndDropsBlankSections() {
+        Template template = Template.compile("<p title='{{title}}'>{{#note}}<i>{{note}}</i>{{/note}}{{title}}</p>",
+                Template.HTML, "title", "note");
+
+        assertThat(template.render("Tom & \"Jerry's\"", " "))
+                .isEqualTo("<p title='Tom &amp; &quot;Jerry&#39;s&quot;'>Tom &amp; &quot;Jerry&#39;s&quot;</p>");
+        assertThat(template.render("<b>", "ok")).isEqualTo("<p title='&lt;b&gt;'><i>ok</i>&lt;b&gt;</p>");
+        assertThat(template.render(null, null)).isEqualTo("<p title=''></p>");
+    }
+
+    @Test
+    void ampersandTagsAreNotEscaped() {
+        Template template = Template.compile("{{&link}} {{link}}{{#link}}!{{/link}}", Template.HTML, "link");
+
+        assertThat(template.render("a&b")).isEqualTo("a&b a&amp;b!");
+        assertThat(new String(template.renderUtf8("<é>"), StandardCharsets.UTF_8)).isEqualTo("<é> &lt;é&gt;!");
+        assertThat(template.render((String) null)).isEqualTo(" ");
+    }
+
+    @Test
+    void utf8RenderingMatchesTheStringForm() {
+        Template template = Template.compile("Grüße, {{name}}!{{#extra}} ({{extra}}){{/extra}}\n", Template.HTML,
+                "name", "extra");
+        String[][] cases = { { "Zoë", null }, { "東京", "€ & ✓" }, { "", "" } };
+        for (String[] values : cases)
+            assertThat(new String(template.renderUtf8(values), StandardCharsets.UTF_8))
+                    .isEqualTo(template.render(values));
+    }
+
+    @Test
+    void escapesVCardTextValues() {
+        assertThat(Template.escapeVCard("Main St, 1; Floor 2\\3\r\nSuite 4\nX"))
+                .isEqualTo("Main St\\, 1\\; Floor 2\\\\3\\nSuite 4\\nX");
+        String plain = "+44 20 7946 0000";
+        assertThat(Template.escapeVCard(plain)).isSameAs(plain);
+        assertThat(Template.escapeHtml(plain)).isSameAs(plain);
+    }
+
+    @Test
+    void rejectsMalformedTemplates() {
+        assertThatThrownBy(() -> Template.compile("{{missing}}", Template.HTML, "name"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Template.compile("{{#a}}{{#b}}{{/b}}{{/a}}", Template.HTML, "a", "b"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Template.compile("{{#a}}open", Template.HTML, "a"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Template.compile("{{a", Template.HTML, "a"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Template.compile("{{a}}", Template.HTML, "a").render("x", "y"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
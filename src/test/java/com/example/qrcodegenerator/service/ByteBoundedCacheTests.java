@@ -0,0 +1,46 @@
+package com.example.qrcodegenerator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteBoundedCacheTests {
+
+    @Test
+    void evictsByTotalBytes() {
+        ByteBoundedCache<String, byte[]> cache = new ByteBoundedCache<>(800, b -> b.length);
+        for (int i = 0; i < 10; i++)
+            cache.put("k" + i, new byte[100]);
+
+        ByteBoundedCache.Stats stats = cache.stats();
+        assertThat(stats.bytes()).isLessThanOrEqualTo(800);
+        assertThat(stats.entries()).isEqualTo(8);
+        assertThat(stats.evictions()).isEqualTo(2);
+        assertThat(cache.get("k0")).isNull();
+        assertThat(cache.get("k9")).isNotNull();
+    }
+
+    @Test
+    void referencedEntriesGetASecondChance() {
+        ByteBoundedCache<String, byte[]> cache = new ByteBoundedCache<>(800, b -> b.length);
+        for (int i = 0; i < 8; i++)
+            cache.put("k" + i, new byte[100]);
+        cache.get("k0");
+        cache.put("k8", new byte[100]);
+
+        assertThat(cache.get("k0")).isNotNull();
+        assertThat(cache.get("k1")).isNull();
+    }
+
+    @Test
+    void rejectsOversizedEntriesAndCountsHits() {
+        ByteBoundedCache<String, byte[]> cache = new ByteBoundedCache<>(800, b -> b.length);
+        cache.put("big", new byte[101]);
+        cache.put("small", new byte[10]);
+
+        assertThat(cache.get("big")).isNull();
+        assertThat(cache.get("small")).hasSize(10);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+}
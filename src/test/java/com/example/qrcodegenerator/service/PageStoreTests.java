@@ -0,0 +1,122 @@
+package com.example.qrcodegenerator.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageStoreTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deduplicatesAndRebuildsTheIndexOnStartup() throws Exception {
+        PageStore store = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        String first = store.put("<html>one</html>");
+        String again = store.put("<html>one</html>");
+        String second = store.put("<html>two</html>");
+        store.destroy();
+
+        assertThat(again).isEqualTo(first).matches("[0-9a-f]{32}");
+        assertThat(second).isNotEqualTo(first);
+        assertThat(store.stats().writes()).isEqualTo(2);
+        assertThat(store.stats().duplicates()).isEqualTo(1);
+
+        PageStore reopened = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        assertThat(reopened.get(first)).asString(StandardCharsets.UTF_8).isEqualTo("<html>one</html>");
+        assertThat(reopened.get(second)).asString(StandardCharsets.UTF_8).isEqualTo("<html>two</html>");
+        assertThat(reopened.get("0".repeat(32))).isNull();
+        reopened.destroy();
+    }
+
+    @Test
+    void cutsOffATornRecordAtTheEnd() throws Exception {
+        PageStore store = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        String kept = store.put("<html>kept</html>");
+        store.put("<html>torn</html>");
+        store.destroy();
+
+        Path pack = dir.resolve("packs").resolve("pack-000001.dat");
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        PageStore reopened = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        assertThat(reopened.stats().pages()).isEqualTo(1);
+        assertThat(reopened.get(kept)).isNotNull();
+        String next = reopened.put("<html>next</html>");
+        reopened.destroy();
+
+        PageStore again = new PageStore(dir.toString(), DataSize.ofMegabytes(1), Duration.ZERO);
+        assertThat(again.get(next)).asString(StandardCharsets.UTF_8).isEqualTo("<html>next</html>");
+        again.destroy();
+    }
+
+    @Test
+    void compactionDropsExpiredPagesAndKeepsLiveOnesReadable() throws Exception {
+        // tiny packs, so every page seals the pack before it
+        PageStore store = new PageStore(dir.toString(), DataSize.ofBytes(64), Duration.ofDays(30));
+        String[] ids = new String[4];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = store.put("<html>page " + i + "</html>");
+        assertThat(packCount()).isEqualTo(4);
+
+        // nothing has expired yet, and every sealed pack is fully live
+        assertThat(store.compact(System.currentTimeMillis())).isZero();
+
+        long later = System.currentTimeMillis() + Duration.ofDays(31).toMillis();
+        assertThat(store.compact(later)).isEqualTo(3);
+        assertThat(store.stats().pages()).isZero();
+        assertThat(store.get(ids[0])).isNull();
+
+        String fresh = store.put("<html>fresh</html>");
+        assertThat(store.get(fresh)).isNotNull();
+        store.destroy();
+    }
+
+    @Test
+    void compactionKeepsPagesCopiedIntoThePackThatWasActive() throws Exception {
+        // three 56-byte records per pack
+        PageStore store = new PageStore(dir.toString(), DataSize.ofBytes(170), Duration.ofSeconds(10));
+        long start = System.currentTimeMillis();
+        String[] ids = new String[15];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = store.put(page(i), start);
+        // stored again past half the retention, two pages of each of the five packs move on:
+        // three full packs and one more record in pack 9, the active one
+        for (int i = 0; i < ids.length; i++) {
+            if (i % 3 != 2)
+                store.put(page(i), start + 6000);
+        }
+        assertThat(packCount()).isEqualTo(9);
+
+        // the copies of the five remaining pages fill pack 9 and roll over to pack 10, after
+        // which pack 9 looks mostly dead to a count taken before the pass
+        assertThat(store.compact(start + 6000)).isEqualTo(5);
+        assertThat(packCount()).isEqualTo(5);
+        for (int i = 0; i < ids.length; i++)
+            assertThat(store.get(ids[i])).asString(StandardCharsets.UTF_8).isEqualTo(new String(page(i),
+                    StandardCharsets.UTF_8));
+        store.destroy();
+    }
+
+    private static byte[] page(int i) {
+        return "<html>page %02d</html>".formatted(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long packCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve("packs"))) {
+            return files.count();
+        }
+    }
+}
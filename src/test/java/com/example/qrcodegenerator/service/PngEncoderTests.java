@@ -0,0 +1,73 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.client.j2se.MatrixToImageConfig;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PngEncoderTests {
+
+    static Stream<Arguments> sizesAndColors() {
+        int[][] colors = {
+                { 0xFF000000, 0xFFFFFFFF }, // classic
+                { 0xFF3F51B5, 0xFFFFFFFF }, // indigo
+                { 0xFFDC2743, 0xFFFFF5F5 }, // sunset
+                { 0xFF2E7D32, 0xFFE8F5E9 }, // forest
+                { 0x802E7D32, 0x00FFFFFF }, // translucent
+        };
+        return Stream.of(21, 100, 257, 300, 1001).flatMap(size -> Stream.of(colors)
+                .map(c -> Arguments.of(size, c[0], c[1])));
+    }
+
+    @ParameterizedTest
+    @MethodSource("sizesAndColors")
+    void decodesToTheSamePixelsAsMatrixToImageWriter(int size, int on, int off) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode("https://example.com/menu?table=" + size,
+                BarcodeFormat.QR_CODE, size, size, Map.of(EncodeHintType.CHARACTER_SET, "UTF-8"));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "PNG", expected, new MatrixToImageConfig(on, off));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new PngEncoder().write(matrix, on, off, actual);
+
+        BufferedImage expectedImage = ImageIO.read(new ByteArrayInputStream(expected.toByteArray()));
+        BufferedImage actualImage = ImageIO.read(new ByteArrayInputStream(actual.toByteArray()));
+        assertThat(actualImage.getWidth()).isEqualTo(expectedImage.getWidth());
+        assertThat(actualImage.getHeight()).isEqualTo(expectedImage.getHeight());
+        for (int y = 0; y < expectedImage.getHeight(); y++) {
+            for (int x = 0; x < expectedImage.getWidth(); x++) {
+                int expectedPixel = expectedImage.getColorModel().hasAlpha()
+                        ? expectedImage.getRGB(x, y)
+                        : expectedImage.getRGB(x, y) | 0xFF000000;
+                assertThat(actualImage.getRGB(x, y)).as("pixel %d,%d", x, y).isEqualTo(expectedPixel);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("sizesAndColors")
+    void reusedEncoderProducesIdenticalOutput(int size, int on, int off) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode("reuse", BarcodeFormat.QR_CODE, size, size);
+        PngEncoder encoder = new PngEncoder();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        encoder.write(matrix, on, off, first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        encoder.write(matrix, on, off, second);
+
+        assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QrRasterTests {
+
+    private static final String TEXT = "BEGIN:VCARD\nVERSION:3.0\nN:Doe;Jane\nFN:Jane Doe\nEND:VCARD\n";
+
+    private final QrService service = new QrService(1 << 20, 1 << 20, "native",
+            new RenderScheduler(2, 64, Duration.ofSeconds(10), Duration.ofSeconds(1)),
+            new RenderMetrics(new SimpleMeterRegistry()));
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 29, 150, 300, 301, 1200 })
+    void matchesQrCodeWriterGeometry(int size) throws Exception {
+        BitMatrix expected = new QRCodeWriter().encode(TEXT, BarcodeFormat.QR_CODE, size, size,
+                QrService.hints(TEXT));
+        QrRaster raster = new QrRaster(service.modules(TEXT).modules(), size, size);
+
+        assertThat(raster.toBitMatrix()).isEqualTo(expected);
+
+        ByteArrayOutputStream fromMatrix = new ByteArrayOutputStream();
+        new PngEncoder().write(expected, 0xFF000000, 0xFFFFFFFF, fromMatrix);
+        ByteArrayOutputStream fromRaster = new ByteArrayOutputStream();
+        new PngEncoder().write(raster, 0xFF000000, 0xFFFFFFFF, fromRaster);
+        assertThat(fromRaster.toByteArray()).isEqualTo(fromMatrix.toByteArray());
+    }
+
+    @Test
+    void sizesAndColorsShareOneEncode() throws Exception {
+        service.generatePng("https://example.com/menu", 150);
+        service.generatePng("https://example.com/menu", 300);
+        service.generatePng("https://example.com/menu", 1200, 0xFF3F51B5, 0xFFFFFFFF);
+
+        ByteBoundedCache.Stats modules = service.moduleCacheStats();
+        assertThat(modules.misses()).isEqualTo(1);
+        assertThat(modules.hits()).isEqualTo(2);
+        assertThat(service.renderCacheStats().entries()).isEqualTo(3);
+    }
+}
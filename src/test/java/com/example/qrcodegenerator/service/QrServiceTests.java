@@ -0,0 +1,112 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QrServiceTests {
+
+    private static final String VCARD = "BEGIN:VCARD\nVERSION:3.0\nN:Doe;Jane\nFN:Jane Doe\n"
+            + "TEL;TYPE=CELL:+15551234567\nEMAIL:jane.doe@example.com\nEND:VCARD\n";
+
+    private final QrService service = new QrService(1 << 20, 1 << 20, "native",
+            new RenderScheduler(2, 64, Duration.ofSeconds(10), Duration.ofSeconds(1)),
+            new RenderMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void mixedSegmentsNeedASmallerVersionThanByteMode() throws Exception {
+        // byte mode alone needs version 6 for this card
+        assertThat(service.modules(VCARD).version()).isEqualTo(5);
+        assertThat(service.modules(VCARD, ErrorCorrectionLevel.H).version())
+                .isGreaterThan(service.modules(VCARD).version());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { VCARD, "https://example.com/menu?table=12", "Grüße aus Köln", "日本語のテキスト" })
+    void compactCodesDecodeToTheSameText(String text) throws Exception {
+        byte[] png = service.generatePng(text, 400);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(
+                new BufferedImageLuminanceSource(ImageIO.read(new ByteArrayInputStream(png)))));
+        String decoded = new QRCodeReader().decode(bitmap, Map.of(DecodeHintType.PURE_BARCODE, true)).getText();
+        assertThat(decoded).isEqualTo(text);
+    }
+
+    @Test
+    void cachedRendersKeepTheirVersion() throws Exception {
+        service.render(VCARD, 200, null, null);
+        QrService.Render hit = service.prepare(VCARD, 200, null, null, QrFormat.PNG, ErrorCorrectionLevel.L);
+
+        assertThat(hit.contentLength()).isPositive();
+        assertThat(hit.version()).isEqualTo(5);
+        assertThat(hit.ecc()).isEqualTo(ErrorCorrectionLevel.L);
+        assertThat(service.prepare(VCARD, 200, null, null, QrFormat.PNG, ErrorCorrectionLevel.M).etag())
+                .isNotEqualTo(hit.etag());
+    }
+
+    @Test
+    void etagsAreKnownWithoutEncoding() throws Exception {
+        long misses = service.moduleCacheStats().misses();
+        String png = service.etag("etag-only", 0, null, null, QrFormat.PNG, ErrorCorrectionLevel.L);
+        String svg = service.etag("etag-only", 0, null, null, QrFormat.SVG, ErrorCorrectionLevel.L);
+        assertThat(service.moduleCacheStats().misses()).isEqualTo(misses);
+
+        assertThat(service.prepare("etag-only", 300, null, null, QrFormat.PNG, ErrorCorrectionLevel.L).etag())
+                .isEqualTo(png);
+        service.render("etag-only", 300, null, null);
+        assertThat(service.prepare("etag-only", 300, null, null, QrFormat.PNG, ErrorCorrectionLevel.L).etag())
+                .isEqualTo(png);
+        assertThat(service.prepare("etag-only", 300, null, null, QrFormat.SVG, ErrorCorrectionLevel.L).etag())
+                .isEqualTo(svg).isNotEqualTo(png);
+    }
+
+    @Test
+    void uncachedPngsAreWrittenFromAReusedBufferAndCachedOnlyWhenSmall() throws Exception {
+        // entries of up to 2 KB are cached
+        QrService small = new QrService(8 * 2048, 1 << 20, "native",
+                new RenderScheduler(1, 8, Duration.ofSeconds(10), Duration.ofSeconds(1)),
+                new RenderMetrics(new SimpleMeterRegistry()));
+        RecordingStream first = new RecordingStream();
+        RecordingStream second = new RecordingStream();
+        small.prepare(VCARD, 2000, null, null).writeTo(first);
+        small.prepare("https://example.com/menu?table=12", 2000, null, null).writeTo(second);
+
+        assertThat(first.size()).isGreaterThan(2048);
+        assertThat(ImageIO.read(new ByteArrayInputStream(first.toByteArray())).getWidth()).isEqualTo(2000);
+        // written straight from the buffer the PNG was encoded into, not from a copy of it
+        assertThat(first.arrays).hasSize(1);
+        assertThat(second.arrays).hasSize(1).first().isSameAs(first.arrays.getFirst());
+        assertThat(small.renderCacheStats().entries()).isZero();
+
+        RecordingStream thumbnail = new RecordingStream();
+        small.prepare(VCARD, 100, null, null).writeTo(thumbnail);
+        assertThat(small.renderCacheStats().entries()).isEqualTo(1);
+        assertThat(small.prepare(VCARD, 100, null, null).contentLength()).isEqualTo(thumbnail.size());
+    }
+
+    private static final class RecordingStream extends ByteArrayOutputStream {
+        final List<byte[]> arrays = new ArrayList<>();
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            arrays.add(b);
+            super.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.qrcodegenerator.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RenderSchedulerTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 1, Duration.ofSeconds(10), Duration.ofSeconds(3));
+        CountDownLatch running = new CountDownLatch(1);
+        callers.submit(() -> scheduler.call(() -> {
+            running.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        callers.submit(() -> scheduler.call(() -> "queued"));
+        waitForQueueDepth(scheduler, 1);
+
+        assertThatThrownBy(() -> scheduler.call(() -> "rejected"))
+                .isInstanceOf(RenderRejectedException.class)
+                .extracting("retryAfterSeconds").isEqualTo(3L);
+        assertThat(scheduler.stats().rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelsQueuedWorkPastItsDeadline() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 8, Duration.ofMillis(200), Duration.ofSeconds(1));
+        CountDownLatch running = new CountDownLatch(1);
+        // occupy the only thread with deadline-free batch work
+        scheduler.executor().execute(() -> {
+            running.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> scheduler.call(() -> "too late"))
+                .isInstanceOf(RenderRejectedException.class);
+        RenderScheduler.Stats stats = scheduler.stats();
+        assertThat(stats.expired()).isEqualTo(1);
+        assertThat(stats.queueDepth()).isZero();
+    }
+
+    @Test
+    void waitsForStartedWorkPastItsDeadline() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 8, Duration.ofMillis(100), Duration.ofSeconds(1));
+        String result = scheduler.call(() -> {
+            Thread.sleep(300);
+            return "finished";
+        });
+
+        assertThat(result).isEqualTo("finished");
+        assertThat(scheduler.stats().expired()).isZero();
+        assertThat(scheduler.stats().completed()).isEqualTo(1);
+    }
+
+    @Test
+    void nestedCallsRunInlineOnRenderThreads() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 1, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        String result = scheduler.call(() -> scheduler.call(() -> Thread.currentThread().getName()));
+        assertThat(result).startsWith("qr-render-");
+    }
+
+    private static void waitForQueueDepth(RenderScheduler scheduler, int depth) throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.stats().queueDepth() < depth; i++)
+            Thread.sleep(10);
+        assertThat(scheduler.stats().queueDepth()).isEqualTo(depth);
+    }
+}
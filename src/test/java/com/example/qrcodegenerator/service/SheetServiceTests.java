@@ -0,0 +1,156 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SheetServiceTests {
+
+    private final RenderScheduler scheduler = new RenderScheduler(2, 8, Duration.ofSeconds(10), Duration.ofSeconds(1));
+    private final SheetService service = new SheetService(new QrService(1 << 20, 1 << 20, "native", scheduler,
+            new RenderMetrics(new SimpleMeterRegistry())), scheduler, 1000, 200_000_000);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void pngTilesDecodeAndCaptionsAreDrawn() throws Exception {
+        List<String> contents = IntStream.rangeClosed(1, 7).mapToObj(i -> "https://example.com/table/" + i).toList();
+        List<String> captions = IntStream.rangeClosed(1, 7).mapToObj(i -> "Table " + i).toList();
+        SheetService.Prepared sheet = service.prepare(sheet(contents, captions, 3, 0, 200));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        service.writePng(sheet, png);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertThat(image.getWidth()).isEqualTo(sheet.width()).isEqualTo(3 * 216);
+        assertThat(image.getHeight()).isEqualTo(sheet.height()).isEqualTo(3 * (200 + 24 + 16));
+        for (int i : new int[] { 0, 4, 6 }) {
+            int x = (i % 3) * sheet.cellWidth + sheet.tileX;
+            int y = (i / 3) * sheet.cellHeight + sheet.tileY;
+            assertThat(decode(image.getSubimage(x, y, 200, 200))).isEqualTo(contents.get(i));
+            assertThat(dark(image.getSubimage(x, y + 200, 200, sheet.captionHeight))).isPositive();
+        }
+        // the two unused cells of the last row stay blank
+        assertThat(dark(image.getSubimage(216, 2 * sheet.cellHeight, 432, sheet.cellHeight))).isZero();
+    }
+
+    @Test
+    void largeSheetsRenderBandByBand() throws Exception {
+        List<String> contents = IntStream.range(0, 500).mapToObj(i -> "LABEL-" + i).toList();
+        SheetService.Prepared sheet = service.prepare(sheet(contents, null, 20, 25, 64));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        service.writePng(sheet, png);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertThat(image.getHeight()).isEqualTo(25 * (64 + 16));
+        int last = 499;
+        assertThat(decode(image.getSubimage((last % 20) * sheet.cellWidth + sheet.tileX,
+                (last / 20) * sheet.cellHeight + sheet.tileY, 64, 64))).isEqualTo("LABEL-499");
+    }
+
+    @Test
+    void pdfIsWellFormed() throws Exception {
+        SheetService.Prepared sheet = service.prepare(sheet(List.of("one", "two (2)"), List.of("One", "Two (2)"),
+                2, 0, 150));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writePdf(sheet, out);
+        byte[] pdf = out.toByteArray();
+        String text = new String(pdf, StandardCharsets.ISO_8859_1);
+
+        assertThat(text).startsWith("%PDF-1.4").endsWith("%%EOF\n");
+        // every xref entry points at its object
+        Matcher xref = Pattern.compile("startxref\n(\\d+)").matcher(text);
+        assertThat(xref.find()).isTrue();
+        String[] lines = text.substring(Integer.parseInt(xref.group(1))).split("\n");
+        for (int object = 1; object <= 6; object++) {
+            int offset = Integer.parseInt(lines[2 + object].substring(0, 10));
+            assertThat(text.substring(offset)).startsWith(object + " 0 obj");
+        }
+
+        int start = text.indexOf("stream\n") + 7;
+        int length = Integer.parseInt(text.replaceAll("(?s).*6 0 obj\n(\\d+)\n.*", "$1"));
+        String content = new String(new InflaterInputStream(new ByteArrayInputStream(pdf, start, length))
+                .readAllBytes(), StandardCharsets.ISO_8859_1);
+        assertThat(content).contains(" re\n").contains("(Two \\(2\\)) Tj");
+    }
+
+    @Test
+    void rejectsLayoutsThatCannotHoldTheCodes() {
+        assertThatThrownBy(() -> service.prepare(sheet(List.of("a", "b", "c"), null, 1, 2, 100)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.prepare(sheet(List.of("x".repeat(500)), null, 1, 0, 40)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.prepare(sheet(List.of("a"), List.of(), 1, 0, 100)))
+                .isInstanceOf(IllegalArgumentException.class);
+        // blank cells count, and rows times the cell height would overflow an int
+        assertThatThrownBy(() -> service.prepare(sheet(List.of("a"), null, 1, 2_000_000, 1200)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.prepare(sheet(List.of("a"), null, 20, 50, 1200)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rendersOnASingleRenderThreadWithoutWaitingOnItself() throws Exception {
+        RenderScheduler single = new RenderScheduler(1, 2, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        try {
+            SheetService singleThreaded = new SheetService(new QrService(1 << 20, 1 << 20, "native", single,
+                    new RenderMetrics(new SimpleMeterRegistry())), single, 1000, 200_000_000);
+            List<String> contents = IntStream.range(0, 60).mapToObj(i -> "CELL-" + i).toList();
+            SheetService.Prepared sheet = singleThreaded.prepare(sheet(contents, null, 6, 0, 64));
+
+            byte[] png = singleThreaded.renderPng(sheet);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            assertThat(decode(image.getSubimage(5 * sheet.cellWidth + sheet.tileX, 9 * sheet.cellHeight + sheet.tileY,
+                    64, 64))).isEqualTo("CELL-59");
+            assertThat(new String(singleThreaded.renderPdf(sheet), StandardCharsets.ISO_8859_1)).startsWith("%PDF-");
+        } finally {
+            single.destroy();
+        }
+    }
+
+    private static SheetService.Sheet sheet(List<String> contents, List<String> captions, int columns, int rows,
+            int tileSize) {
+        return new SheetService.Sheet(contents, captions, columns, rows, tileSize, 16, 0xFF000000, 0xFFFFFFFF,
+                ErrorCorrectionLevel.L);
+    }
+
+    private static String decode(BufferedImage tile) throws Exception {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(tile)));
+        return new QRCodeReader().decode(bitmap, Map.of(DecodeHintType.PURE_BARCODE, true)).getText();
+    }
+
+    private static long dark(BufferedImage region) {
+        long count = 0;
+        for (int y = 0; y < region.getHeight(); y++) {
+            for (int x = 0; x < region.getWidth(); x++) {
+                if ((region.getRGB(x, y) & 0xFF) < 128)
+                    count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.qrcodegenerator.service;
+
+import com.google.zxing.common.BitMatrix;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SvgWriterTests {
+
+    private static final Pattern RUN = Pattern.compile("([Mm])(-?\\d+) (-?\\d+)h(\\d+)v1h-\\4z");
+
+    private final QrService service = new QrService(1 << 20, 1 << 20, "native",
+            new RenderScheduler(2, 64, Duration.ofSeconds(10), Duration.ofSeconds(1)),
+            new RenderMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void pathRunsCoverExactlyTheDarkModules() throws Exception {
+        BitMatrix modules = service.modules("https://example.com/menu?table=12").modules();
+        String svg = svg(new QrRaster(modules, 300, 300), 0xFFDC2743, 0xFFFFF5F5);
+
+        BitMatrix drawn = new BitMatrix(modules.getWidth(), modules.getHeight());
+        int x = 0;
+        int y = 0;
+        Matcher run = RUN.matcher(svg.substring(svg.indexOf(" d=\"")));
+        while (run.find()) {
+            boolean absolute = run.group(1).equals("M");
+            x = (absolute ? 0 : x) + Integer.parseInt(run.group(2));
+            y = (absolute ? 0 : y) + Integer.parseInt(run.group(3));
+            drawn.setRegion(x, y, Integer.parseInt(run.group(4)), 1);
+        }
+        assertThat(drawn).isEqualTo(modules);
+        assertThat(svg).contains("fill=\"#dc2743\"", "fill=\"#fff5f5\"", "translate(").doesNotContain("fill-opacity");
+    }
+
+    @Test
+    void outputSizeFollowsModulesNotPixels() throws Exception {
+        BitMatrix modules = service.modules("size independent").modules();
+        String small = svg(new QrRaster(modules, 150, 150), 0xFF000000, 0x80FFFFFF);
+        String large = svg(new QrRaster(modules, 4000, 4000), 0xFF000000, 0x80FFFFFF);
+
+        assertThat(large.length() - small.length()).isLessThan(16);
+        assertThat(small).contains("fill-opacity=\"0.502\"");
+    }
+
+    private static String svg(QrRaster raster, int on, int off) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgWriter.write(raster, on, off, out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
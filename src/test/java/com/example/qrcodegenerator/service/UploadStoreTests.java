@@ -0,0 +1,137 @@
+package com.example.qrcodegenerator.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadStoreTests {
+
+    @TempDir
+    Path dir;
+
+    private final RenderScheduler scheduler = new RenderScheduler(1, 8, Duration.ofSeconds(10), Duration.ofSeconds(1));
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void storesUnderTheContentHashAndDeduplicates() throws Exception {
+        UploadStore store = store(DataSize.ofMegabytes(1), List.of());
+        byte[] png = png(40, 20);
+
+        UploadStore.Stored first = store.store(new ByteArrayInputStream(png));
+        UploadStore.Stored second = store.store(new ByteArrayInputStream(png));
+
+        assertThat(first.name()).matches("[0-9a-f]{64}\\.png");
+        assertThat(first.duplicate()).isFalse();
+        assertThat(second.name()).isEqualTo(first.name());
+        assertThat(second.duplicate()).isTrue();
+        assertThat(Files.readAllBytes(dir.resolve(first.name()))).isEqualTo(png);
+        // only the stored file is left; temporary files are cleaned up
+        try (var files = Files.list(dir)) {
+            assertThat(files.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void rejectsOtherTypesBeforeReadingTheBody() throws Exception {
+        UploadStore store = store(DataSize.ofMegabytes(1), List.of());
+        AtomicLong read = new AtomicLong();
+        InputStream html = counting(new ByteArrayInputStream(new byte[64 * 1024]), read);
+
+        assertThatThrownBy(() -> store.store(html))
+                .isInstanceOfSatisfying(UploadStore.RejectedUploadException.class,
+                        e -> assertThat(e.isTooLarge()).isFalse());
+        assertThat(read.get()).isLessThan(64 * 1024);
+    }
+
+    @Test
+    void stopsReadingOnceTheLimitIsPassed() throws Exception {
+        UploadStore store = store(DataSize.ofKilobytes(4), List.of());
+        byte[] big = new byte[1 << 20];
+        System.arraycopy(png(1, 1), 0, big, 0, 8);
+        AtomicLong read = new AtomicLong();
+
+        assertThatThrownBy(() -> store.store(counting(new ByteArrayInputStream(big), read)))
+                .isInstanceOfSatisfying(UploadStore.RejectedUploadException.class,
+                        e -> assertThat(e.isTooLarge()).isTrue());
+        assertThat(read.get()).isLessThan(big.length);
+        try (var files = Files.list(dir)) {
+            assertThat(files.count()).isZero();
+        }
+    }
+
+    @Test
+    void writesVariantsNarrowerThanTheOriginal() throws Exception {
+        UploadStore store = store(DataSize.ofMegabytes(1), List.of(50, 100, 400));
+        UploadStore.Stored stored = store.store(new ByteArrayInputStream(png(200, 100)));
+        store.writeVariants(dir.resolve(stored.name()), stored.name(), stored.type());
+
+        assertThat(store.variants(stored.name())).containsExactly(50, 100);
+        BufferedImage variant = ImageIO.read(dir.resolve(UploadStore.variantName(stored.name(), 50)).toFile());
+        assertThat(variant.getWidth()).isEqualTo(50);
+        assertThat(variant.getHeight()).isEqualTo(25);
+        assertThat(store.variants("../" + stored.name())).isEmpty();
+    }
+
+    @Test
+    void rejectsImagesWithTooManyPixelsBeforeDecodingThem() throws Exception {
+        UploadStore store = new UploadStore(dir, DataSize.ofMegabytes(1), 1000, List.of("png"), List.of(50),
+                scheduler);
+
+        assertThat(store.store(new ByteArrayInputStream(png(40, 20))).duplicate()).isFalse();
+        assertThatThrownBy(() -> store.store(new ByteArrayInputStream(png(50, 50))))
+                .isInstanceOfSatisfying(UploadStore.RejectedUploadException.class,
+                        e -> assertThat(e.isTooLarge()).isTrue());
+        try (var files = Files.list(dir)) {
+            assertThat(files.count()).isEqualTo(1);
+        }
+
+        // an original stored under a higher limit is not decoded to make variants
+        UploadStore.Stored stored = store(DataSize.ofMegabytes(1), List.of()).store(
+                new ByteArrayInputStream(png(200, 100)));
+        store.writeVariants(dir.resolve(stored.name()), stored.name(), stored.type());
+        assertThat(store.variants(stored.name())).isEmpty();
+    }
+
+    private UploadStore store(DataSize maxFileSize, List<Integer> variantWidths) {
+        return new UploadStore(dir, maxFileSize, 25_000_000, List.of("png", "jpeg"), variantWidths, scheduler);
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static InputStream counting(InputStream in, AtomicLong read) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0)
+                    read.addAndGet(n);
+                return n;
+            }
+        };
+    }
+}